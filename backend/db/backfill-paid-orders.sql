@@ -0,0 +1,11 @@
+-- Mark orders paid whose successful payment predates order status tracking (those
+-- orders still read 'created', so the API would accept another payment for them).
+-- Safe to run while the API is up: it only touches orders that are not held by a
+-- payment in flight, and an order claimed meanwhile no longer matches.
+--
+--   psql -U gateway_user -d payment_gateway -v ON_ERROR_STOP=1 -f backend/db/backfill-paid-orders.sql
+
+UPDATE orders o
+SET status = 'paid', version = o.version + 1, updated_at = localtimestamp
+WHERE o.status IN ('created', 'attempted')
+  AND EXISTS (SELECT 1 FROM payments p WHERE p.order_id = o.id AND p.status = 'success');
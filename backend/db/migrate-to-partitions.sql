@@ -0,0 +1,59 @@
+-- Convert orders and payments created before partitioning (plain tables) into the
+-- created_at-partitioned layout of schema.sql.
+--
+-- No rows are copied: each existing table is attached as one partition covering
+-- everything up to the start of next month, and PartitionMaintenance creates the
+-- monthly partitions after it. Attaching checks every existing row against the
+-- range (a sequential scan) while holding an exclusive lock, so stop the API first.
+--
+-- Run it as the database user the API connects as, so that it owns the new tables:
+--
+--   psql -U gateway_user -d payment_gateway -v ON_ERROR_STOP=1 --single-transaction \
+--        -f backend/db/migrate-to-partitions.sql
+
+-- payments.order_id can no longer reference orders(id) alone.
+ALTER TABLE payments DROP CONSTRAINT IF EXISTS payments_order_id_fkey;
+
+-- The key becomes (id, created_at), as on the parent, and the old table gives up
+-- the names the new parent uses.
+ALTER TABLE orders RENAME TO orders_legacy;
+ALTER TABLE orders_legacy ALTER COLUMN created_at SET NOT NULL,
+    DROP CONSTRAINT orders_pkey,
+    ADD CONSTRAINT orders_legacy_pkey PRIMARY KEY (id, created_at);
+ALTER INDEX IF EXISTS idx_orders_merchant_created RENAME TO orders_legacy_merchant_created;
+ALTER INDEX IF EXISTS idx_orders_merchant_status_created RENAME TO orders_legacy_merchant_status_created;
+
+ALTER TABLE payments RENAME TO payments_legacy;
+ALTER TABLE payments_legacy ALTER COLUMN created_at SET NOT NULL,
+    DROP CONSTRAINT payments_pkey,
+    ADD CONSTRAINT payments_legacy_pkey PRIMARY KEY (id, created_at);
+ALTER INDEX IF EXISTS idx_payments_order_id RENAME TO payments_legacy_order_id;
+ALTER INDEX IF EXISTS idx_payments_status RENAME TO payments_legacy_status;
+ALTER INDEX IF EXISTS idx_payments_merchant_created RENAME TO payments_legacy_merchant_created;
+ALTER INDEX IF EXISTS idx_payments_merchant_status_created RENAME TO payments_legacy_merchant_status_created;
+ALTER INDEX IF EXISTS idx_payments_merchant_method_created RENAME TO payments_legacy_merchant_method_created;
+
+-- Parents with exactly the old column types (a partition must match them), keyed
+-- and indexed as in schema.sql.
+CREATE TABLE orders (LIKE orders_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (created_at);
+ALTER TABLE orders ADD PRIMARY KEY (id, created_at);
+ALTER TABLE orders ADD FOREIGN KEY (merchant_id) REFERENCES merchants(id);
+CREATE INDEX idx_orders_merchant_created ON orders(merchant_id, created_at, id);
+CREATE INDEX idx_orders_merchant_status_created ON orders(merchant_id, status, created_at, id);
+
+CREATE TABLE payments (LIKE payments_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (created_at);
+ALTER TABLE payments ADD PRIMARY KEY (id, created_at);
+ALTER TABLE payments ADD FOREIGN KEY (merchant_id) REFERENCES merchants(id);
+CREATE INDEX idx_payments_order_id ON payments(order_id);
+CREATE INDEX idx_payments_status ON payments(status);
+CREATE INDEX idx_payments_merchant_created ON payments(merchant_id, created_at, id);
+CREATE INDEX idx_payments_merchant_status_created ON payments(merchant_id, status, created_at, id);
+CREATE INDEX idx_payments_merchant_method_created ON payments(merchant_id, method, created_at, id);
+
+-- Attaching adopts the old tables' key and matching indexes and builds the rest.
+ALTER TABLE orders ATTACH PARTITION orders_legacy
+    FOR VALUES FROM (MINVALUE) TO (date_trunc('month', localtimestamp) + interval '1 month');
+ALTER TABLE payments ATTACH PARTITION payments_legacy
+    FOR VALUES FROM (MINVALUE) TO (date_trunc('month', localtimestamp) + interval '1 month');
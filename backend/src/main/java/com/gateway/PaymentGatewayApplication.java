@@ -7,11 +7,13 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @SpringBootApplication
+@EnableScheduling
 public class PaymentGatewayApplication {
 
     @Value("${app.test.merchant.id}")
@@ -29,6 +31,9 @@ public class PaymentGatewayApplication {
     @Value("${app.test.merchant.api-secret}")
     private String testApiSecret;
 
+    @Value("${app.test.merchant.webhook-url:}")
+    private String testWebhookUrl;
+
     public static void main(String[] args) {
         SpringApplication.run(PaymentGatewayApplication.class, args);
     }
@@ -44,6 +49,7 @@ public class PaymentGatewayApplication {
                 testMerchant.setEmail(testMerchantEmail);
                 testMerchant.setApiKey(testApiKey);
                 testMerchant.setApiSecret(testApiSecret);
+                testMerchant.setWebhookUrl(testWebhookUrl.isBlank() ? null : testWebhookUrl);
                 testMerchant.setIsActive(true);
                 testMerchant.setCreatedAt(LocalDateTime.now());
                 testMerchant.setUpdatedAt(LocalDateTime.now());
@@ -0,0 +1,76 @@
+package com.gateway.config;
+
+import com.gateway.models.Merchant;
+import com.gateway.services.ApiException;
+import com.gateway.services.MerchantAuthService;
+import com.gateway.services.MerchantRateLimiter;
+import com.gateway.services.RequestStages;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Applies {@link MerchantRateLimiter} to the authenticated order and payment
+ * endpoints before the controller runs. The credentials are checked here
+ * only, and so timed once as the auth stage: the merchant is left in
+ * {@link MerchantAuthService#MERCHANT_ATTRIBUTE} for the controller, and
+ * invalid credentials get their 401 here. Requests without an API key pass
+ * through to the controller.
+ *
+ * The concurrency slot is held until the request completes, including the
+ * async part of streaming responses such as exports.
+ */
+@Component
+public class RateLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String QUOTA_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".quota";
+
+    @Autowired
+    private MerchantAuthService merchantAuthService;
+
+    @Autowired
+    private MerchantRateLimiter rateLimiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async re-dispatches already hold the slot taken by the original request.
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        String apiKey = request.getHeader("X-Api-Key");
+        if (apiKey == null) {
+            return true;
+        }
+        Merchant merchant = merchantAuthService.authenticate(apiKey, request.getHeader("X-Api-Secret"));
+        if (merchant == null) {
+            throw new ApiException("AUTHENTICATION_ERROR", "Invalid API credentials", HttpStatus.UNAUTHORIZED);
+        }
+        request.setAttribute(MerchantAuthService.MERCHANT_ATTRIBUTE, merchant);
+        long started = RequestStages.start();
+        MerchantRateLimiter.MerchantQuota quota;
+        try {
+            quota = rateLimiter.acquire(merchant.getId(), method.getMethod().getName());
+        } finally {
+            RequestStages.end("ratelimit", started);
+        }
+        if (quota != null) {
+            request.setAttribute(QUOTA_ATTRIBUTE, quota);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        Object quota = request.getAttribute(QUOTA_ATTRIBUTE);
+        if (quota != null) {
+            request.removeAttribute(QUOTA_ATTRIBUTE);
+            ((MerchantRateLimiter.MerchantQuota) quota).release();
+        }
+    }
+}
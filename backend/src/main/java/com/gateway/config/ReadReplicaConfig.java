@@ -0,0 +1,113 @@
+package com.gateway.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, on when {@code app.datasource.replicas.urls} lists any.
+ * Replaces Boot's single pool with the same primary pool plus one pool per
+ * replica behind {@link ReadRoutingDataSource}, and lets GET endpoints read
+ * from the replicas. Off, every query runs on the primary as before.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replicas.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Value("${app.datasource.replicas.urls}")
+    private List<String> urls;
+
+    @Value("${app.datasource.replicas.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${app.datasource.replicas.password:${spring.datasource.password:}}")
+    private String password;
+
+    @Value("${app.datasource.replicas.pool-size:10}")
+    private int poolSize;
+
+    @Value("${app.datasource.replicas.connection-timeout:1s}")
+    private Duration connectionTimeout;
+
+    @Value("${app.datasource.replicas.max-lag:5s}")
+    private Duration maxLag;
+
+    @Value("${app.datasource.replicas.check-interval:1s}")
+    private Duration checkInterval;
+
+    @Value("${app.datasource.replicas.primary-window:60s}")
+    private Duration primaryWindow;
+
+    /**
+     * The primary pool, built and bound from spring.datasource.* as Boot does.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReadRoutingDataSource readRoutingDataSource(HikariDataSource primaryDataSource,
+                                                       MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (pools.size() + 1));
+            pool.setJdbcUrl(url.trim());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setMaximumPoolSize(poolSize);
+            pool.setReadOnly(true);
+            // A replica that is down must fail fast, and must not stop the application starting.
+            pool.setConnectionTimeout(connectionTimeout.toMillis());
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricRegistry(meterRegistry);
+            pools.add(pool);
+        }
+        return new ReadRoutingDataSource(primaryDataSource, pools, maxLag, checkInterval, meterRegistry);
+    }
+
+    /**
+     * What everything injects. The proxy fetches the real connection at the
+     * first statement, after a transaction has been marked read-only.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadRoutingDataSource readRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readRoutingDataSource);
+    }
+
+    @Bean
+    public WebMvcConfigurer replicaReadConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                // The status push must see a payment complete the moment it does.
+                registry.addInterceptor(new ReplicaReadInterceptor(primaryWindow))
+                        .addPathPatterns("/api/v1/orders", "/api/v1/orders/**",
+                                "/api/v1/payments", "/api/v1/payments/**")
+                        .excludePathPatterns("/api/v1/payments/*/public/events", "/api/v1/payments/*/public/wait");
+            }
+        };
+    }
+}
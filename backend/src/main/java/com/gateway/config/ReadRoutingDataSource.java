@@ -0,0 +1,219 @@
+package com.gateway.config;
+
+import com.gateway.services.ReadRouting;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out primary connections, or replica connections for reads in a
+ * {@link ReadRouting} replica scope that are not part of a read-write
+ * transaction. Sits behind a LazyConnectionDataSourceProxy, so the choice
+ * is made at the first statement, once the transaction's read-only flag
+ * is known.
+ *
+ * Replicas are taken round-robin among those that answered the last check
+ * and were at most {@code max-lag} behind. A checker thread measures each
+ * one every {@code check-interval}: replay lag on a streaming standby, zero
+ * for a plain database standing in for one. A replica that refuses a
+ * connection is skipped until it passes a check again, and that read goes
+ * to the primary.
+ */
+public class ReadRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadRoutingDataSource.class);
+
+    // Replay lag; zero when everything received has been replayed (an idle primary) or not a standby.
+    // A restarted standby reports receiving from the start of a segment it has already replayed.
+    private static final String LAG_QUERY =
+            "SELECT pg_is_in_recovery(), CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() <= pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryReads;
+    private final Counter fallbackReads;
+
+    private ScheduledExecutorService checker;
+
+    public ReadRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicaPools,
+                                 Duration maxLag, Duration checkInterval, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.replicas = new ArrayList<>(replicaPools.size());
+        for (HikariDataSource pool : replicaPools) {
+            Replica replica = new Replica(pool, meterRegistry.counter("gateway.datasource.connections",
+                    "pool", pool.getPoolName(), "route", "replica"));
+            Gauge.builder("gateway.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("pool", pool.getPoolName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("gateway.datasource.replica.available", replica, r -> r.isEligible(maxLag) ? 1 : 0)
+                    .tag("pool", pool.getPoolName())
+                    .register(meterRegistry);
+            replicas.add(replica);
+        }
+        primaryReads = meterRegistry.counter("gateway.datasource.connections",
+                "pool", primary.getPoolName(), "route", "primary");
+        fallbackReads = meterRegistry.counter("gateway.datasource.connections",
+                "pool", primary.getPoolName(), "route", "fallback");
+    }
+
+    public void start() {
+        checker = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-check-"));
+        checker.scheduleWithFixedDelay(this::checkAll, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Read replicas: {} (max lag {})", replicas.stream().map(r -> r.name).toList(), maxLag);
+    }
+
+    public void close() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        replicas.forEach(r -> r.pool.close());
+    }
+
+    /* ================= ROUTING ================= */
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!ReadRouting.isReplicaAllowed() || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+        Replica replica = select();
+        if (replica != null) {
+            try {
+                Connection connection = replica.pool.getConnection();
+                replica.routed.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.down(e.getMessage());
+            }
+        }
+        fallbackReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pools are configured with their credentials");
+    }
+
+    private Replica select() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isEligible(maxLag)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // The primary pool, for pool statistics (HealthMonitor, Boot's Hikari metrics).
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? (T) this : primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    /* ================= CHECKS ================= */
+
+    private void checkAll() {
+        for (Replica replica : replicas) {
+            try {
+                check(replica);
+            } catch (SQLException | RuntimeException e) {
+                replica.down(e.getMessage());
+            }
+        }
+    }
+
+    private void check(Replica replica) throws SQLException {
+        try (Connection connection = replica.pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout((int) Math.max(1, checkInterval.toSeconds()));
+            try (ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                rs.next();
+                replica.up(rs.getBoolean(1), rs.getDouble(2), maxLag);
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        final String name;
+        final HikariDataSource pool;
+        final Counter routed;
+        volatile boolean up;
+        volatile double lagSeconds = Double.NaN;
+
+        Replica(HikariDataSource pool, Counter routed) {
+            this.name = pool.getPoolName();
+            this.pool = pool;
+            this.routed = routed;
+        }
+
+        boolean isEligible(Duration maxLag) {
+            return up && lagSeconds * 1000 <= maxLag.toMillis();
+        }
+
+        void up(boolean standby, double lag, Duration maxLag) {
+            boolean wasEligible = isEligible(maxLag);
+            if (!standby && !(lagSeconds >= 0)) {
+                log.info("Read replica {} is not a standby; using it as a replica with no lag", name);
+            }
+            up = true;
+            lagSeconds = lag;
+            boolean eligible = isEligible(maxLag);
+            if (eligible != wasEligible) {
+                if (eligible) {
+                    log.info("Read replica {} in use (lag {}s)", name, lag);
+                } else {
+                    log.warn("Read replica {} is {}s behind, reads go elsewhere until it catches up", name, lag);
+                }
+            }
+        }
+
+        void down(String error) {
+            if (up || Double.isNaN(lagSeconds)) {
+                log.warn("Read replica {} is down, reads go elsewhere: {}", name, error);
+                // Logged once until it recovers.
+                lagSeconds = Double.POSITIVE_INFINITY;
+            }
+            up = false;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.gateway.config;
+
+import com.gateway.services.ReadRouting;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Lets GET requests read from replicas: opens a {@link ReadRouting} scope
+ * for the handler and closes it when the handler returns, or when it hands
+ * the response to another thread. Registered by ReadReplicaConfig.
+ */
+public class ReplicaReadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = ReplicaReadInterceptor.class.getName() + ".scope";
+
+    private final Duration primaryWindow;
+
+    public ReplicaReadInterceptor(Duration primaryWindow) {
+        this.primaryWindow = primaryWindow;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.REQUEST
+                && ("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            request.setAttribute(SCOPE_ATTRIBUTE, ReadRouting.replica(primaryWindow));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        close(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        close(request);
+    }
+
+    private void close(HttpServletRequest request) {
+        Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope != null) {
+            request.removeAttribute(SCOPE_ATTRIBUTE);
+            ((ReadRouting) scope).close();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.gateway.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
@@ -21,4 +23,26 @@ public class SecurityConfig {
             }
         };
     }
+    
+    @Bean
+    public WebMvcConfigurer rateLimitConfigurer(RateLimitInterceptor rateLimitInterceptor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(rateLimitInterceptor)
+                        .addPathPatterns("/api/v1/orders", "/api/v1/orders/**",
+                                "/api/v1/payments", "/api/v1/payments/**")
+                        .excludePathPatterns("/api/v1/*/*/public", "/api/v1/*/*/public/**");
+            }
+        };
+    }
+    
+    /**
+     * Replaces Boot's default Jackson converter (same ObjectMapper) so JSON
+     * encoding shows up in Server-Timing.
+     */
+    @Bean
+    public TimedJsonHttpMessageConverter timedJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJsonHttpMessageConverter(objectMapper);
+    }
 }
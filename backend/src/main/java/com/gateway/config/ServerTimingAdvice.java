@@ -0,0 +1,52 @@
+package com.gateway.config;
+
+import com.gateway.dto.ErrorResponse;
+import com.gateway.services.RequestStages;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Runs just before a response body is written: counts error responses by
+ * code ({@code gateway.api.errors{code,status}}) and adds Server-Timing for
+ * bodies not written by {@link TimedJsonHttpMessageConverter}, such as the
+ * cached byte[] responses.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof ErrorResponse error) {
+            int status = response instanceof ServletServerHttpResponse servlet
+                    ? servlet.getServletResponse().getStatus() : 0;
+            meterRegistry.counter("gateway.api.errors",
+                    "code", error.getError().getCode(), "status", Integer.toString(status)).increment();
+        }
+
+        if (!TimedJsonHttpMessageConverter.class.isAssignableFrom(selectedConverterType)) {
+            RequestStages stages = RequestStages.current();
+            if (stages != null && stages.isHeaderEnabled()) {
+                response.getHeaders().set(RequestStages.HEADER, stages.toHeader());
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,60 @@
+package com.gateway.config;
+
+import com.gateway.services.RequestStages;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives each API request a {@link RequestStages} and, when it finishes,
+ * records every stage as {@code gateway.http.stage{method,uri,stage}}.
+ * The Server-Timing header itself is added as the body is written (see
+ * TimedJsonHttpMessageConverter and ServerTimingAdvice), since headers
+ * cannot change once the response is committed.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.server-timing.enabled:false}")
+    private boolean headerEnabled;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestStages stages = new RequestStages(headerEnabled);
+        request.setAttribute(RequestStages.ATTRIBUTE, stages);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            String method = request.getMethod();
+            stages.forEach((stage, nanos) -> Timer.builder("gateway.http.stage")
+                    .description("Time spent in one stage of an API request")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .tag("stage", stage)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.gateway.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.services.RequestStages;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson converter that times JSON encoding as the "serialize" stage.
+ * During an API request the body is encoded into a buffer first, so the
+ * Server-Timing header can still include the encoding before it is sent.
+ */
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        RequestStages stages = RequestStages.current();
+        if (stages == null) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        long started = RequestStages.start();
+        super.writeInternal(object, type, new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return buffer;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return outputMessage.getHeaders();
+            }
+        });
+        stages.add("serialize", System.nanoTime() - started);
+
+        HttpHeaders headers = outputMessage.getHeaders();
+        headers.setContentLength(buffer.size());
+        if (stages.isHeaderEnabled()) {
+            headers.set(RequestStages.HEADER, stages.toHeader());
+        }
+        buffer.writeTo(outputMessage.getBody());
+    }
+}
@@ -1,38 +1,95 @@
 package com.gateway.controllers;
 
+import com.gateway.services.HealthMonitor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.sql.DataSource;
-import java.sql.Connection;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Health probes. All three answer from HealthMonitor's latest snapshot and
+ * never touch the database or the connection pool.
+ */
 @RestController
 public class HealthController {
     
     @Autowired
-    private DataSource dataSource;
+    private HealthMonitor healthMonitor;
     
     @GetMapping("/health")
-    public ResponseEntity<Map<String, String>> health() {
-        Map<String, String> response = new HashMap<>();
+    public ResponseEntity<Map<String, Object>> health() {
+        HealthMonitor.Snapshot snapshot = healthMonitor.snapshot();
+        Map<String, Object> response = details(snapshot);
         response.put("status", "healthy");
-        
-        // Check database connectivity
-        try (Connection conn = dataSource.getConnection()) {
-            response.put("database", "connected");
-        } catch (Exception e) {
-            response.put("database", "disconnected");
-        }
+        response.put("database", snapshot.databaseUp() ? "connected" : "disconnected");
         
         // Add timestamp in ISO 8601 format
         response.put("timestamp", ZonedDateTime.now().format(DateTimeFormatter.ISO_INSTANT));
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Liveness: fails only if the health checker itself has stalled.
+     */
+    @GetMapping("/health/live")
+    public ResponseEntity<Map<String, Object>> live() {
+        boolean live = healthMonitor.isLive();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", live ? "UP" : "DOWN");
+        response.put("last_check_age_ms", ageMillis(healthMonitor.snapshot()));
+        return ResponseEntity.status(live ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+    
+    /**
+     * Readiness: 503 while the database is unreachable, the last check is
+     * stale or the node is shutting down.
+     */
+    @GetMapping("/health/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        boolean ready = healthMonitor.isReady();
+        Map<String, Object> response = details(healthMonitor.snapshot());
+        response.put("status", ready ? "UP" : "DOWN");
+        response.put("draining", healthMonitor.isDraining());
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+    
+    private static Map<String, Object> details(HealthMonitor.Snapshot snapshot) {
+        Map<String, Object> database = new LinkedHashMap<>();
+        database.put("up", snapshot.databaseUp());
+        database.put("latency_ms", snapshot.databaseLatencyMs());
+        if (snapshot.error() != null) {
+            database.put("error", snapshot.error());
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("last_check_age_ms", ageMillis(snapshot));
+        response.put("db", database);
+        HealthMonitor.Pool pool = snapshot.pool();
+        if (pool != null) {
+            Map<String, Object> poolInfo = new LinkedHashMap<>();
+            poolInfo.put("active", pool.active());
+            poolInfo.put("idle", pool.idle());
+            poolInfo.put("max", pool.max());
+            poolInfo.put("waiting", pool.waiting());
+            poolInfo.put("saturation", pool.saturation());
+            response.put("pool", poolInfo);
+        }
+        Map<String, Object> processing = new LinkedHashMap<>();
+        processing.put("queue_depth", snapshot.processingQueueDepth());
+        processing.put("in_flight", snapshot.processingInFlight());
+        response.put("processing", processing);
+        return response;
+    }
+    
+    private static Long ageMillis(HealthMonitor.Snapshot snapshot) {
+        long age = snapshot.ageMillis();
+        return age == Long.MAX_VALUE ? null : age;
+    }
 }
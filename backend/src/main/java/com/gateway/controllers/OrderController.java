@@ -1,17 +1,29 @@
 package com.gateway.controllers;
 
+import com.gateway.dto.BatchItemResult;
+import com.gateway.dto.CreateOrderBatchRequest;
 import com.gateway.dto.CreateOrderRequest;
 import com.gateway.dto.ErrorResponse;
+import com.gateway.dto.ListQuery;
 import com.gateway.models.Merchant;
 import com.gateway.models.Order;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.services.IdempotencyService;
+import com.gateway.services.MerchantAuthService;
+import com.gateway.services.OrderExpiryScheduler;
 import com.gateway.services.OrderService;
+import com.gateway.services.PublicOrderCache;
+import com.gateway.services.RequestStages;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/orders")
@@ -21,7 +33,19 @@ public class OrderController {
     private OrderService orderService;
     
     @Autowired
-    private MerchantRepository merchantRepository;
+    private MerchantAuthService merchantAuthService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private PublicOrderCache publicOrderCache;
+
+    @Autowired
+    private OrderExpiryScheduler orderExpiry;
+    
+    @Value("${app.orders.batch.max-size:500}")
+    private int maxBatchSize;
     
     /**
      * Create a new order
@@ -30,19 +54,26 @@ public class OrderController {
     public ResponseEntity<?> createOrder(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody CreateOrderRequest request) {
         
         // Authenticate merchant
-        Merchant merchant = authenticateMerchant(apiKey, apiSecret);
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
         if (merchant == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ErrorResponse.create("AUTHENTICATION_ERROR", "Invalid API credentials"));
         }
         
+        return idempotencyService.execute(merchant.getId(), idempotencyKey, "orders", request,
+                () -> createOrder(request, merchant));
+    }
+    
+    private ResponseEntity<?> createOrder(CreateOrderRequest request, Merchant merchant) {
         // Validate amount
-        if (request.getAmount() == null || request.getAmount() < 100) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(ErrorResponse.create("BAD_REQUEST_ERROR", "amount must be at least 100"));
+        ErrorResponse invalid = validate(request);
+        if (invalid != null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(invalid);
         }
         
         // Create order
@@ -51,6 +82,105 @@ public class OrderController {
         return ResponseEntity.status(HttpStatus.CREATED).body(order);
     }
     
+    /**
+     * Create up to app.orders.batch.max-size orders in one call. Valid items
+     * are inserted together in one transaction; each item reports its own result.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> createOrders(
+            @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
+            @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody CreateOrderBatchRequest request) {
+        
+        // Authenticate merchant once for the whole batch
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
+        if (merchant == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ErrorResponse.create("AUTHENTICATION_ERROR", "Invalid API credentials"));
+        }
+        
+        List<CreateOrderRequest> items = request.getOrders();
+        if (items == null || items.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorResponse.create("BAD_REQUEST_ERROR", "orders must not be empty"));
+        }
+        if (items.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorResponse.create("BAD_REQUEST_ERROR",
+                            "at most " + maxBatchSize + " orders per batch"));
+        }
+        
+        return idempotencyService.execute(merchant.getId(), idempotencyKey, "orders/batch", request,
+                () -> createOrders(items, merchant));
+    }
+    
+    private ResponseEntity<?> createOrders(List<CreateOrderRequest> items, Merchant merchant) {
+        List<BatchItemResult<Order>> results = new ArrayList<>(items.size());
+        List<CreateOrderRequest> valid = new ArrayList<>(items.size());
+        List<Integer> validIndexes = new ArrayList<>(items.size());
+        
+        for (int i = 0; i < items.size(); i++) {
+            ErrorResponse invalid = validate(items.get(i));
+            if (invalid != null) {
+                results.add(BatchItemResult.failed(i, HttpStatus.BAD_REQUEST.value(), invalid));
+            } else {
+                results.add(null);
+                valid.add(items.get(i));
+                validIndexes.add(i);
+            }
+        }
+        
+        if (!valid.isEmpty()) {
+            // Timed here rather than in the service so the commit is included
+            long started = RequestStages.start();
+            List<Order> created = orderService.createOrders(valid, merchant.getId());
+            RequestStages.end("save", started);
+            for (int i = 0; i < created.size(); i++) {
+                int index = validIndexes.get(i);
+                results.set(index, BatchItemResult.created(index, created.get(i)));
+            }
+        }
+        
+        return ResponseEntity.ok(Map.of("items", results));
+    }
+    
+    private ErrorResponse validate(CreateOrderRequest request) {
+        if (request == null || request.getAmount() == null || request.getAmount() < 100) {
+            return ErrorResponse.create("BAD_REQUEST_ERROR", "amount must be at least 100");
+        }
+        Long expiresIn = request.getExpiresIn();
+        if (expiresIn != null && (expiresIn < OrderExpiryScheduler.MIN_TTL.toSeconds()
+                || expiresIn > orderExpiry.getMaxTtl().toSeconds())) {
+            return ErrorResponse.create("BAD_REQUEST_ERROR", "expires_in must be between "
+                    + OrderExpiryScheduler.MIN_TTL.toSeconds() + " and " + orderExpiry.getMaxTtl().toSeconds()
+                    + " seconds");
+        }
+        return null;
+    }
+    
+    /**
+     * List the merchant's orders, newest first. Filters: status, from, to;
+     * paging: limit (max 100) and cursor from the previous page's next_cursor.
+     */
+    @GetMapping
+    public ResponseEntity<?> listOrders(
+            @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
+            @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
+            ListQuery query) {
+        
+        // Authenticate merchant
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
+        if (merchant == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ErrorResponse.create("AUTHENTICATION_ERROR", "Invalid API credentials"));
+        }
+        
+        return ResponseEntity.ok(orderService.listOrders(merchant.getId(), query));
+    }
+    
     /**
      * Get order by ID
      */
@@ -58,10 +188,11 @@ public class OrderController {
     public ResponseEntity<?> getOrder(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
             @PathVariable String orderId) {
         
         // Authenticate merchant
-        Merchant merchant = authenticateMerchant(apiKey, apiSecret);
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
         if (merchant == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ErrorResponse.create("AUTHENTICATION_ERROR", "Invalid API credentials"));
@@ -84,37 +215,23 @@ public class OrderController {
     }
     
     /**
-     * Get order by ID (public endpoint for checkout page)
+     * Get order by ID (public endpoint for checkout page). Served from
+     * PublicOrderCache; If-None-Match / If-Modified-Since get a 304.
      */
     @GetMapping("/{orderId}/public")
     public ResponseEntity<?> getOrderPublic(@PathVariable String orderId) {
-        Order order = orderService.getOrder(orderId);
-        if (order == null) {
+        PublicOrderCache.OrderView view = publicOrderCache.get(orderId);
+        if (view == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(ErrorResponse.create("NOT_FOUND_ERROR", "Order not found"));
         }
         
-        return ResponseEntity.ok(order);
-    }
-    
-    /**
-     * Authenticate merchant using API key and secret
-     */
-    private Merchant authenticateMerchant(String apiKey, String apiSecret) {
-        if (apiKey == null || apiSecret == null) {
-            return null;
-        }
-        
-        Optional<Merchant> merchantOpt = merchantRepository.findByApiKey(apiKey);
-        if (merchantOpt.isEmpty()) {
-            return null;
-        }
-        
-        Merchant merchant = merchantOpt.get();
-        if (!merchant.getApiSecret().equals(apiSecret)) {
-            return null;
-        }
-        
-        return merchant;
+        // Spring answers 304 from these headers when the client's copy is current.
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(view.etag())
+                .lastModified(view.lastModified())
+                .body(view.body());
     }
 }
@@ -2,24 +2,43 @@ package com.gateway.controllers;
 
 import com.gateway.dto.CreatePaymentRequest;
 import com.gateway.dto.ErrorResponse;
+import com.gateway.dto.ListQuery;
+import com.gateway.dto.PaymentStatus;
 import com.gateway.models.Merchant;
 import com.gateway.models.Order;
 import com.gateway.models.Payment;
-import com.gateway.repositories.MerchantRepository;
+import com.gateway.services.ApiException;
+import com.gateway.services.CardAnalysis;
+import com.gateway.services.IdempotencyService;
+import com.gateway.services.MerchantAuthService;
+import com.gateway.services.OrderExpiryScheduler;
 import com.gateway.services.OrderService;
+import com.gateway.services.OrderStateMachine;
+import com.gateway.services.PaymentExportService;
+import com.gateway.services.PaymentStatusNotifier;
 import com.gateway.services.PaymentService;
+import com.gateway.services.RiskCheckService;
 import com.gateway.services.ValidationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Optional;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/payments")
 public class PaymentController {
 
+    private static final long STATUS_RECONNECT_MILLIS = 2000;
+
     @Autowired
     private PaymentService paymentService;
 
@@ -30,7 +49,25 @@ public class PaymentController {
     private ValidationService validationService;
 
     @Autowired
-    private MerchantRepository merchantRepository;
+    private MerchantAuthService merchantAuthService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PaymentExportService exportService;
+
+    @Autowired
+    private PaymentStatusNotifier statusNotifier;
+
+    @Autowired
+    private OrderExpiryScheduler orderExpiry;
+
+    @Autowired
+    private OrderStateMachine orderStates;
+
+    @Autowired
+    private RiskCheckService riskCheckService;
 
     /* ================= CREATE PAYMENT (AUTH) ================= */
 
@@ -38,9 +75,11 @@ public class PaymentController {
     public ResponseEntity<?> createPayment(
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
             @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody CreatePaymentRequest request) {
 
-        Merchant merchant = authenticateMerchant(apiKey, apiSecret);
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
         if (merchant == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ErrorResponse.create(
@@ -49,6 +88,12 @@ public class PaymentController {
                     ));
         }
 
+        return idempotencyService.execute(merchant.getId(), idempotencyKey, "payments",
+                fingerprint(request), () -> createPayment(request, merchant));
+    }
+
+    private ResponseEntity<?> createPayment(CreatePaymentRequest request, Merchant merchant) {
+
         if (request.getOrderId() == null || request.getOrderId().isBlank()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ErrorResponse.create(
@@ -57,6 +102,11 @@ public class PaymentController {
                     ));
         }
 
+        // Expired by this node lately: refused without reading the order
+        if (orderExpiry.isRecentlyExpired(request.getOrderId(), merchant.getId())) {
+            throw orderStates.conflict(OrderStateMachine.EXPIRED);
+        }
+
         Order order = orderService.getOrder(request.getOrderId());
         if (order == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -82,6 +132,8 @@ public class PaymentController {
                     ));
         }
 
+        CardAnalysis cardAnalysis = null;
+
         /* ---------- UPI ---------- */
         if ("upi".equals(request.getMethod())) {
 
@@ -105,7 +157,8 @@ public class PaymentController {
                         ));
             }
 
-            if (!validationService.isValidCard(card)) {
+            cardAnalysis = validationService.analyzeCard(card);
+            if (!cardAnalysis.isValid()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body(ErrorResponse.create(
                                 "INVALID_CARD",
@@ -129,20 +182,107 @@ public class PaymentController {
                     ));
         }
 
-        Payment payment = paymentService.createAndProcessPayment(request, order);
+        /* ---------- RISK ---------- */
+        RiskCheckService.Decision decision = riskCheckService.check(request, merchant.getId());
+
+        Payment payment = decision.approved()
+                ? paymentService.createAndProcessPayment(request, order, cardAnalysis)
+                : paymentService.createDeclinedPayment(request, order, cardAnalysis, decision);
         return ResponseEntity.status(HttpStatus.CREATED).body(payment);
     }
 
+    /**
+     * Idempotency fingerprint without the full card number or CVV, which
+     * must never be stored, even hashed.
+     */
+    private Map<String, Object> fingerprint(CreatePaymentRequest request) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("order_id", request.getOrderId());
+        fields.put("method", request.getMethod());
+        fields.put("vpa", request.getVpa());
+        CreatePaymentRequest.CardDetails card = request.getCard();
+        if (card != null) {
+            fields.put("card_last4", validationService.getCardLast4(card.getNumber()));
+            fields.put("expiry_month", card.getExpiryMonth());
+            fields.put("expiry_year", card.getExpiryYear());
+            fields.put("holder_name", card.getHolderName());
+        }
+        return fields;
+    }
+
+    /* ================= LIST PAYMENTS ================= */
+
+    /**
+     * Newest first. Filters: status, method, from, to; paging: limit
+     * (max 100) and cursor from the previous page's next_cursor.
+     */
+    @GetMapping
+    public ResponseEntity<?> listPayments(
+            @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
+            @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
+            ListQuery query
+    ) {
+
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
+        if (merchant == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ErrorResponse.create(
+                            "AUTHENTICATION_ERROR",
+                            "Invalid API credentials"
+                    ));
+        }
+
+        return ResponseEntity.ok(paymentService.listPayments(merchant.getId(), query));
+    }
+
+    /* ================= EXPORT PAYMENTS ================= */
+
+    /**
+     * Stream all matching payments as CSV (default) or NDJSON, oldest first.
+     * Same filters as the listing; gzip when the client accepts it.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
+            @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(value = "format", required = false) String format,
+            ListQuery query
+    ) {
+
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
+        if (merchant == null) {
+            // The declared body type must stay StreamingResponseBody for MVC to stream it
+            throw new ApiException("AUTHENTICATION_ERROR", "Invalid API credentials", HttpStatus.UNAUTHORIZED);
+        }
+
+        PaymentExportService.Format exportFormat = PaymentExportService.Format.parse(format);
+        boolean gzip = PaymentExportService.acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = exportService.export(merchant.getId(), query, exportFormat, gzip);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"payments." + exportFormat.extension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     /* ================= GET PAYMENT ================= */
 
     @GetMapping("/{paymentId}")
     public ResponseEntity<?> getPayment(
             @PathVariable String paymentId,
             @RequestHeader(value = "X-Api-Key", required = false) String apiKey,
-            @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret
+            @RequestHeader(value = "X-Api-Secret", required = false) String apiSecret,
+            @RequestAttribute(value = MerchantAuthService.MERCHANT_ATTRIBUTE, required = false) Merchant authenticated
     ) {
 
-        Merchant merchant = authenticateMerchant(apiKey, apiSecret);
+        Merchant merchant = authenticated != null ? authenticated : merchantAuthService.authenticate(apiKey, apiSecret);
         if (merchant == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ErrorResponse.create(
@@ -163,15 +303,85 @@ public class PaymentController {
         return ResponseEntity.ok(payment);
     }
 
-    /* ================= AUTH ================= */
+    /* ================= PUBLIC STATUS (CHECKOUT) ================= */
 
-    private Merchant authenticateMerchant(String apiKey, String apiSecret) {
-        if (apiKey == null || apiSecret == null) return null;
+    @GetMapping("/{paymentId}/public")
+    public ResponseEntity<?> getPaymentPublic(@PathVariable String paymentId) {
+        Payment payment = paymentService.getPayment(paymentId);
+        if (payment == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ErrorResponse.create(
+                            "NOT_FOUND_ERROR",
+                            "Payment not found"
+                    ));
+        }
+        return ResponseEntity.ok(PaymentStatus.of(payment));
+    }
+
+    /**
+     * Server-Sent Events: a "status" event with the current status, then one
+     * more when the payment is finalized, after which the stream ends. An
+     * idle stream ends after app.payment.status.timeout; EventSource reconnects.
+     */
+    @GetMapping(value = "/{paymentId}/public/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable String paymentId) {
+        SseEmitter emitter = new SseEmitter(statusNotifier.getTimeout().toMillis());
+
+        PaymentStatusNotifier.Subscription subscription = statusNotifier.subscribe(paymentId, status -> {
+            sendStatus(emitter, status);
+            emitter.complete();
+        });
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscription.close());
+
+        // Read after subscribing, so a status change in between is not missed.
+        PaymentStatus current = currentStatus(paymentId, subscription);
+        sendStatus(emitter, current);
+        if (current.isFinal()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * Long-poll fallback: answers as soon as the payment is finalized, or
+     * with the still-processing status after app.payment.status.timeout.
+     */
+    @GetMapping("/{paymentId}/public/wait")
+    public DeferredResult<PaymentStatus> waitForPaymentStatus(@PathVariable String paymentId) {
+        DeferredResult<PaymentStatus> result = new DeferredResult<>(statusNotifier.getTimeout().toMillis());
 
-        Optional<Merchant> merchantOpt = merchantRepository.findByApiKey(apiKey);
-        if (merchantOpt.isEmpty()) return null;
+        PaymentStatusNotifier.Subscription subscription = statusNotifier.subscribe(paymentId, result::setResult);
+        result.onCompletion(subscription::close);
+        result.onError(e -> subscription.close());
 
-        Merchant merchant = merchantOpt.get();
-        return merchant.getApiSecret().equals(apiSecret) ? merchant : null;
+        PaymentStatus current = currentStatus(paymentId, subscription);
+        if (current.isFinal()) {
+            result.setResult(current);
+        } else {
+            result.onTimeout(() -> result.setResult(current));
+        }
+        return result;
+    }
+
+    private PaymentStatus currentStatus(String paymentId, PaymentStatusNotifier.Subscription subscription) {
+        Payment payment = paymentService.getPayment(paymentId);
+        if (payment == null) {
+            subscription.close();
+            throw new ApiException("NOT_FOUND_ERROR", "Payment not found", HttpStatus.NOT_FOUND);
+        }
+        return PaymentStatus.of(payment);
+    }
+
+    private static void sendStatus(SseEmitter emitter, PaymentStatus status) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("status")
+                    .reconnectTime(STATUS_RECONNECT_MILLIS)
+                    .data(status, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the stream already ended with the final status.
+        }
     }
 }
@@ -3,17 +3,30 @@ package com.gateway.controllers;
 import com.gateway.dto.ErrorResponse;
 import com.gateway.models.Merchant;
 import com.gateway.repositories.MerchantRepository;
+import com.gateway.services.SimulatedAcquirer;
+import com.gateway.services.WebhookService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 @RestController
 @RequestMapping("/api/v1/test")
@@ -24,6 +37,21 @@ public class TestController {
     
     @Value("${app.test.merchant.email}")
     private String testMerchantEmail;
+
+    @Value("${app.test.merchant.api-secret}")
+    private String testApiSecret;
+
+    @Value("${app.test.mode:false}")
+    private boolean testMode;
+
+    // Absent when another acquirer is plugged in.
+    @Autowired(required = false)
+    private SimulatedAcquirer simulatedAcquirer;
+
+    private static final int MAX_RECEIVED_WEBHOOKS = 100;
+    private static final long MAX_WEBHOOK_DELAY_MS = 30_000;
+
+    private final Deque<Map<String, Object>> receivedWebhooks = new ConcurrentLinkedDeque<>();
     
     /**
      * Test endpoint to verify merchant seeding
@@ -47,4 +75,100 @@ public class TestController {
         
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Stub webhook receiver for local runs: point the test merchant's
+     * webhook_url here. {@code status} and {@code delay_ms} simulate a
+     * failing or slow endpoint; the signature is checked against the test
+     * merchant secret and the result kept with the delivery. Test mode only.
+     */
+    @PostMapping("/webhooks/receive")
+    public ResponseEntity<?> receiveWebhook(
+            @RequestBody String body,
+            @RequestHeader(value = "X-Webhook-Id", required = false) String eventId,
+            @RequestHeader(value = "X-Webhook-Event", required = false) String eventType,
+            @RequestHeader(value = WebhookService.SIGNATURE_HEADER, required = false) String signature,
+            @RequestParam(value = "status", defaultValue = "200") int status,
+            @RequestParam(value = "delay_ms", defaultValue = "0") long delayMs) throws InterruptedException {
+
+        if (!testMode) {
+            return webhookReceiverNotFound();
+        }
+        if (delayMs > 0) {
+            Thread.sleep(Math.min(delayMs, MAX_WEBHOOK_DELAY_MS));
+        }
+
+        Map<String, Object> received = new LinkedHashMap<>();
+        received.put("id", eventId);
+        received.put("event", eventType);
+        received.put("signature_valid", verifySignature(signature, body));
+        received.put("response_status", status);
+        received.put("received_at", Instant.now().toString());
+        received.put("body", body);
+        receivedWebhooks.addFirst(received);
+        while (receivedWebhooks.size() > MAX_RECEIVED_WEBHOOKS) {
+            receivedWebhooks.pollLast();
+        }
+
+        return ResponseEntity.status(status).build();
+    }
+
+    /**
+     * Deliveries seen by the stub receiver, newest first (test mode only).
+     */
+    @GetMapping("/webhooks")
+    public ResponseEntity<?> getReceivedWebhooks() {
+        if (!testMode) {
+            return webhookReceiverNotFound();
+        }
+        List<Map<String, Object>> items = new ArrayList<>(receivedWebhooks);
+        Map<String, Object> response = new HashMap<>();
+        response.put("count", items.size());
+        response.put("items", items);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Brown out one rail of the simulated acquirer (test mode only):
+     * {@code mode} is normal, slow, flaky or down, {@code rail} upi or
+     * card.&lt;network&gt;.
+     */
+    @PostMapping("/acquirer/{rail}/mode")
+    public ResponseEntity<?> setAcquirerMode(@PathVariable String rail, @RequestParam String mode) {
+        if (!testMode || simulatedAcquirer == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ErrorResponse.create("NOT_FOUND_ERROR", "Simulated acquirer is not active"));
+        }
+        SimulatedAcquirer.Mode parsed;
+        try {
+            parsed = SimulatedAcquirer.Mode.parse(mode);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ErrorResponse.create("BAD_REQUEST_ERROR", "mode must be normal, slow, flaky or down"));
+        }
+        simulatedAcquirer.setMode(rail, parsed);
+        return ResponseEntity.ok(Map.of("rail", rail, "mode", parsed.name().toLowerCase()));
+    }
+
+    // Deliveries hold payment data, so outside test mode the receiver does not exist.
+    private ResponseEntity<?> webhookReceiverNotFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ErrorResponse.create("NOT_FOUND_ERROR", "Webhook receiver is not active"));
+    }
+
+    private boolean verifySignature(String signature, String body) {
+        if (signature == null || !signature.startsWith("t=")) {
+            return false;
+        }
+        int comma = signature.indexOf(',');
+        if (comma < 0) {
+            return false;
+        }
+        try {
+            long timestamp = Long.parseLong(signature.substring(2, comma));
+            return WebhookService.sign(testApiSecret, timestamp, body).equals(signature);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
 }
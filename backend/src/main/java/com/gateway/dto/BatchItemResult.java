@@ -0,0 +1,26 @@
+package com.gateway.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of one item of a batch request: the created resource or an error.
+ */
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult<T> {
+    private int index;
+    private int status;
+    private T result;
+    private ErrorResponse.ErrorDetail error;
+    
+    public static <T> BatchItemResult<T> created(int index, T result) {
+        return new BatchItemResult<>(index, 201, result, null);
+    }
+    
+    public static <T> BatchItemResult<T> failed(int index, int status, ErrorResponse error) {
+        return new BatchItemResult<>(index, status, null, error.getError());
+    }
+}
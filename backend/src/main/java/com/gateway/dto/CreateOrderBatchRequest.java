@@ -0,0 +1,9 @@
+package com.gateway.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class CreateOrderBatchRequest {
+    private List<CreateOrderRequest> orders;
+}
@@ -1,5 +1,6 @@
 package com.gateway.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import java.util.Map;
 
@@ -9,4 +10,8 @@ public class CreateOrderRequest {
     private String currency = "INR";
     private String receipt;
     private Map<String, Object> notes;
+
+    // Seconds until an unpaid order expires; the merchant's default when absent.
+    @JsonProperty("expires_in")
+    private Long expiresIn;
 }
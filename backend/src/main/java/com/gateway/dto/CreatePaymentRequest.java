@@ -11,10 +11,15 @@ public class CreatePaymentRequest {
     private String vpa;
     private CardDetails card;
 
+    // Payer's IP address as seen by the merchant; optional, used by the risk checks.
+    @JsonProperty("customer_ip")
+    private String customerIp;
+
     public String getOrderId() { return orderId; }
     public String getMethod() { return method; }
     public String getVpa() { return vpa; }
     public CardDetails getCard() { return card; }
+    public String getCustomerIp() { return customerIp; }
 
     public static class CardDetails {
 
@@ -0,0 +1,18 @@
+package com.gateway.dto;
+
+import lombok.Data;
+
+/**
+ * Query parameters of GET /api/v1/orders and GET /api/v1/payments.
+ * {@code from} and {@code to} are ISO dates or date-times; {@code cursor}
+ * is the {@code next_cursor} of the previous page.
+ */
+@Data
+public class ListQuery {
+    private String status;
+    private String method;
+    private String from;
+    private String to;
+    private String cursor;
+    private Integer limit;
+}
@@ -0,0 +1,23 @@
+package com.gateway.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a listing. Pass {@code next_cursor} back as {@code cursor}
+ * to get the next page; it is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class PageResponse<T> {
+    private List<T> items;
+
+    @JsonProperty("has_more")
+    private boolean hasMore;
+
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+}
@@ -0,0 +1,39 @@
+package com.gateway.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.gateway.models.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Public view of a payment's status for the checkout page; carries nothing
+ * that identifies the merchant or the payer.
+ */
+@Data
+@AllArgsConstructor
+public class PaymentStatus {
+    private String id;
+    private String status;
+
+    @JsonProperty("error_code")
+    private String errorCode;
+
+    @JsonProperty("error_description")
+    private String errorDescription;
+
+    @JsonProperty("updated_at")
+    private LocalDateTime updatedAt;
+
+    public static PaymentStatus of(Payment payment) {
+        return new PaymentStatus(payment.getId(), payment.getStatus(),
+                payment.getErrorCode(), payment.getErrorDescription(), payment.getUpdatedAt());
+    }
+
+    @JsonIgnore
+    public boolean isFinal() {
+        return !"processing".equals(status);
+    }
+}
@@ -1,5 +1,6 @@
 package com.gateway.models;
 
+import com.gateway.services.MerchantAuthCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -8,6 +9,7 @@ import java.util.UUID;
 @Data
 @Entity
 @Table(name = "merchants")
+@EntityListeners(MerchantAuthCacheListener.class)
 public class Merchant {
     
     @Id
@@ -1,18 +1,26 @@
 package com.gateway.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.gateway.services.OrderCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.PartitionKey;
 import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.UUID;
 
 @Data
 @Entity
+// Range-partitioned by created_at. The indexes are declared in schema.sql:
+// Hibernate cannot see indexes of a partitioned table and would recreate them.
 @Table(name = "orders")
-public class Order {
+@EntityListeners(OrderCacheListener.class)
+public class Order implements Persistable<String> {
     
     @Id
     @Column(length = 64)
@@ -34,22 +42,55 @@ public class Order {
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> notes;
     
+    // created, processing (a payment holds the order), attempted (the last
+    // payment failed), paid or expired; see OrderStateMachine.
     @Column(nullable = false, length = 20)
     private String status = "created";
     
+    // Bumped by every status transition; payments claim the order by version.
+    @Version
+    @JsonIgnore
+    @Column(nullable = false)
+    private long version;
+    
+    // Unpaid by then, the order expires (OrderExpiryScheduler). Null: never.
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+    
+    // Partition key: Hibernate adds it to the WHERE clause of updates and deletes.
+    @PartitionKey
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
     
+    // IDs are assigned by IdGenerator, so save() must be told the row is new
+    // or Spring Data merges it with an extra SELECT (and cannot batch inserts).
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+    
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+    
     @PrePersist
     protected void onCreate() {
-        LocalDateTime now = LocalDateTime.now();
+        // Postgres keeps microseconds; the partition key must compare equal after a round trip.
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
         createdAt = now;
         updatedAt = now;
     }
     
+    @PostPersist
+    @PostLoad
+    protected void markPersisted() {
+        persisted = true;
+    }
+    
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
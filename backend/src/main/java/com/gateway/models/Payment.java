@@ -1,16 +1,22 @@
 package com.gateway.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.PartitionKey;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Data
 @Entity
+// Range-partitioned by created_at. The indexes are declared in schema.sql:
+// Hibernate cannot see indexes of a partitioned table and would recreate them.
 @Table(name = "payments")
-public class Payment {
+public class Payment implements Persistable<String> {
 
     @Id
     @Column(length = 64)
@@ -29,6 +35,12 @@ public class Payment {
     private String method;
     private String status = "processing";
 
+    // Completion is a compare-and-set on status and version, see PaymentWriter.
+    @Version
+    @JsonIgnore
+    @Column(nullable = false)
+    private long version;
+
     private String vpa;
 
     @JsonProperty("card_network")
@@ -43,18 +55,46 @@ public class Payment {
     @JsonProperty("error_description")
     private String errorDescription;
 
+    // Node processing the payment, and until when; see PaymentRecoverySweeper.
+    @JsonIgnore
+    @Column(name = "lease_owner", length = 64)
+    private String leaseOwner;
+
+    @JsonIgnore
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    // Partition key, see Order#createdAt.
+    @PartitionKey
     @JsonProperty("created_at")
     private LocalDateTime createdAt;
 
     @JsonProperty("updated_at")
     private LocalDateTime updatedAt;
 
+    // Assigned IDs: see Order#isNew.
+    @Transient
+    @JsonIgnore
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
         updatedAt = createdAt;
     }
 
+    @PostPersist
+    @PostLoad
+    protected void markPersisted() {
+        persisted = true;
+    }
+
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
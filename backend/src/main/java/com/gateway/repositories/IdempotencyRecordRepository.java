@@ -0,0 +1,64 @@
+package com.gateway.repositories;
+
+import com.gateway.models.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyRecordRepository
+        extends JpaRepository<IdempotencyRecord, IdempotencyRecord.Key> {
+
+    /**
+     * Insert an in-progress row, or take over one past its expires_at.
+     * Returns 1 when the caller now owns the key. An in-progress row is never
+     * taken over, even past locked_until: its request may have done its work
+     * without recording the response.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys " +
+                   "(merchant_id, idempotency_key, request_hash, status, created_at, locked_until, expires_at) " +
+                   "VALUES (:merchantId, :key, :requestHash, 'in_progress', :now, :lockedUntil, :expiresAt) " +
+                   "ON CONFLICT (merchant_id, idempotency_key) DO UPDATE SET " +
+                   "request_hash = EXCLUDED.request_hash, status = 'in_progress', " +
+                   "response_code = NULL, response_body = NULL, created_at = EXCLUDED.created_at, " +
+                   "locked_until = EXCLUDED.locked_until, expires_at = EXCLUDED.expires_at " +
+                   "WHERE idempotency_keys.expires_at < :now",
+           nativeQuery = true)
+    int claim(@Param("merchantId") UUID merchantId,
+              @Param("key") String key,
+              @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now,
+              @Param("lockedUntil") LocalDateTime lockedUntil,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'completed', r.responseCode = :code, " +
+           "r.responseBody = :body WHERE r.merchantId = :merchantId AND r.idempotencyKey = :key")
+    int complete(@Param("merchantId") UUID merchantId,
+                 @Param("key") String key,
+                 @Param("code") int code,
+                 @Param("body") String body);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.merchantId = :merchantId " +
+           "AND r.idempotencyKey = :key AND r.status = 'in_progress'")
+    int release(@Param("merchantId") UUID merchantId, @Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE (merchant_id, idempotency_key) IN " +
+                   "(SELECT merchant_id, idempotency_key FROM idempotency_keys " +
+                   "WHERE expires_at < :now LIMIT :limit)",
+           nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
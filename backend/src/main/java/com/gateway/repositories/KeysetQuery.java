@@ -0,0 +1,68 @@
+package com.gateway.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Builds "newest first" listing queries over (merchant_id, created_at, id).
+ *
+ * Only the filters that are set end up in the statement, and the page
+ * position is a comparison on (created_at, id) rather than an OFFSET, so each page is a
+ * range scan on the matching (merchant_id[, column], created_at, id) index.
+ */
+final class KeysetQuery<T> {
+
+    private final EntityManager em;
+    private final Class<T> type;
+    private final StringBuilder jpql;
+    private final Map<String, Object> params = new LinkedHashMap<>();
+
+    KeysetQuery(EntityManager em, Class<T> type, UUID merchantId) {
+        this.em = em;
+        this.type = type;
+        this.jpql = new StringBuilder("SELECT e FROM ")
+                .append(type.getSimpleName())
+                .append(" e WHERE e.merchantId = :merchantId");
+        params.put("merchantId", merchantId);
+    }
+
+    KeysetQuery<T> eq(String field, Object value) {
+        if (value != null) {
+            jpql.append(" AND e.").append(field).append(" = :").append(field);
+            params.put(field, value);
+        }
+        return this;
+    }
+
+    KeysetQuery<T> window(ListFilter filter) {
+        if (filter.from() != null) {
+            jpql.append(" AND e.createdAt >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            jpql.append(" AND e.createdAt < :to");
+            params.put("to", filter.to());
+        }
+        if (filter.afterCreatedAt() != null && filter.afterId() != null) {
+            // (created_at, id) < (:afterCreatedAt, :afterId); the leading
+            // created_at bound keeps it an index range condition.
+            jpql.append(" AND e.createdAt <= :afterCreatedAt")
+                .append(" AND (e.createdAt < :afterCreatedAt OR e.id < :afterId)");
+            params.put("afterCreatedAt", filter.afterCreatedAt());
+            params.put("afterId", filter.afterId());
+        }
+        return this;
+    }
+
+    List<T> fetch(int limit) {
+        jpql.append(" ORDER BY e.createdAt DESC, e.id DESC");
+        TypedQuery<T> query = em.createQuery(jpql.toString(), type);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
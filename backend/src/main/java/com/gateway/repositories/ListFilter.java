@@ -0,0 +1,16 @@
+package com.gateway.repositories;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters and keyset position for a merchant listing. Null fields are not
+ * applied. {@code from} is inclusive, {@code to} exclusive; rows come back
+ * newest first, strictly after ({@code afterCreatedAt}, {@code afterId}).
+ */
+public record ListFilter(String status,
+                         String method,
+                         LocalDateTime from,
+                         LocalDateTime to,
+                         LocalDateTime afterCreatedAt,
+                         String afterId) {
+}
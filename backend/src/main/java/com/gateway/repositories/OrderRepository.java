@@ -4,11 +4,16 @@ import com.gateway.models.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, String>, OrderRepositoryCustom {
     
     List<Order> findByMerchantId(UUID merchantId);
+
+    /** By ID within a created_at window, so only the matching partitions are read. */
+    Optional<Order> findByIdAndCreatedAtBetween(String id, LocalDateTime from, LocalDateTime to);
 }
@@ -0,0 +1,14 @@
+package com.gateway.repositories;
+
+import com.gateway.models.Order;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Up to {@code limit} orders of a merchant, newest first.
+     */
+    List<Order> findPage(UUID merchantId, ListFilter filter, int limit);
+}
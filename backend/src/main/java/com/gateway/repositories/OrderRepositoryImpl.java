@@ -0,0 +1,22 @@
+package com.gateway.repositories;
+
+import com.gateway.models.Order;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+import java.util.UUID;
+
+class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<Order> findPage(UUID merchantId, ListFilter filter, int limit) {
+        return new KeysetQuery<>(em, Order.class, merchantId)
+                .eq("status", filter.status())
+                .window(filter)
+                .fetch(limit);
+    }
+}
@@ -2,15 +2,101 @@ package com.gateway.repositories;
 
 import com.gateway.models.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, String> {
+public interface PaymentRepository extends JpaRepository<Payment, String>, PaymentRepositoryCustom {
     
     List<Payment> findByMerchantId(UUID merchantId);
     
     List<Payment> findByOrderId(String orderId);
+
+    /** By ID within a created_at window, so only the matching partitions are read. */
+    Optional<Payment> findByIdAndCreatedAtBetween(String id, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Move a payment out of "processing" without loading the entity.
+     * Returns 0 if the payment was already finalized or changed since
+     * {@code version} was read. {@code createdAt} is the partition key and
+     * keeps the update to one partition.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :status, p.errorCode = :errorCode, " +
+           "p.errorDescription = :errorDescription, p.updatedAt = :updatedAt, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.createdAt = :createdAt AND p.version = :version AND p.status = 'processing'")
+    int completeProcessing(@Param("id") String id,
+                           @Param("createdAt") LocalDateTime createdAt,
+                           @Param("version") long version,
+                           @Param("status") String status,
+                           @Param("errorCode") String errorCode,
+                           @Param("errorDescription") String errorDescription,
+                           @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Lease up to {@code limit} payments stuck in "processing", in
+     * (created_at, id) order after the given position: those whose lease ran
+     * out, and those without a lease (written before payments were leased on
+     * insert) created before {@code stuckBefore}.
+     * SKIP LOCKED lets several nodes sweep at once without sharing a row, and
+     * the version bump makes a late completion by the original node miss.
+     */
+    @Transactional
+    @Query(value = "WITH stuck AS (" +
+                   "  SELECT id, created_at FROM payments " +
+                   "  WHERE status = 'processing' AND created_at < :now " +
+                   "  AND (created_at, id) > (:afterCreatedAt, :afterId) " +
+                   "  AND (lease_until < :now OR (lease_until IS NULL AND created_at < :stuckBefore)) " +
+                   "  ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED" +
+                   ") " +
+                   "UPDATE payments p SET lease_owner = :owner, lease_until = :leaseUntil, version = p.version + 1 " +
+                   "FROM stuck WHERE p.id = stuck.id AND p.created_at = stuck.created_at RETURNING p.*",
+           nativeQuery = true)
+    List<Payment> claimStuck(@Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                             @Param("afterId") String afterId,
+                             @Param("now") LocalDateTime now,
+                             @Param("stuckBefore") LocalDateTime stuckBefore,
+                             @Param("owner") String owner,
+                             @Param("leaseUntil") LocalDateTime leaseUntil,
+                             @Param("limit") int limit);
+
+    /**
+     * Extend the lease of payments {@code owner} is still processing.
+     * {@code from}/{@code to} bound their created_at.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payments SET lease_until = :leaseUntil " +
+                   "WHERE id IN (:ids) AND created_at BETWEEN :from AND :to " +
+                   "AND status = 'processing' AND lease_owner = :owner",
+           nativeQuery = true)
+    int renewLeases(@Param("ids") Collection<String> ids,
+                    @Param("from") LocalDateTime from,
+                    @Param("to") LocalDateTime to,
+                    @Param("owner") String owner,
+                    @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Make payments this node will not finish due for recovery on any node
+     * right away. {@code from}/{@code to} bound their created_at.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payments SET lease_owner = NULL, lease_until = :now " +
+                   "WHERE id IN (:ids) AND created_at BETWEEN :from AND :to AND status = 'processing'",
+           nativeQuery = true)
+    int releaseLeases(@Param("ids") Collection<String> ids,
+                      @Param("from") LocalDateTime from,
+                      @Param("to") LocalDateTime to,
+                      @Param("now") LocalDateTime now);
 }
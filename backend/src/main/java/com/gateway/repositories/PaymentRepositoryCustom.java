@@ -0,0 +1,14 @@
+package com.gateway.repositories;
+
+import com.gateway.models.Payment;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentRepositoryCustom {
+
+    /**
+     * Up to {@code limit} payments of a merchant, newest first.
+     */
+    List<Payment> findPage(UUID merchantId, ListFilter filter, int limit);
+}
@@ -0,0 +1,23 @@
+package com.gateway.repositories;
+
+import com.gateway.models.Payment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+import java.util.UUID;
+
+class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<Payment> findPage(UUID merchantId, ListFilter filter, int limit) {
+        return new KeysetQuery<>(em, Payment.class, merchantId)
+                .eq("status", filter.status())
+                .eq("method", filter.method())
+                .window(filter)
+                .fetch(limit);
+    }
+}
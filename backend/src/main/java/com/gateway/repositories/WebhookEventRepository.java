@@ -0,0 +1,87 @@
+package com.gateway.repositories;
+
+import com.gateway.models.WebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, String> {
+
+    /**
+     * Lease up to {@code limit} due events, at most {@code perMerchant} per
+     * merchant and none for the merchants in {@code busy} (comma-separated
+     * IDs). Leased rows are pushed to {@code leaseUntil}, so another replica
+     * (or this one after a crash) only retries them once the lease expires.
+     */
+    @Transactional
+    @Query(value = "WITH candidates AS (" +
+                   "  SELECT id, merchant_id, next_attempt_at FROM webhook_events " +
+                   "  WHERE status = 'pending' AND next_attempt_at <= :now " +
+                   "  AND CAST(merchant_id AS text) <> ALL (string_to_array(:busy, ',')) " +
+                   "  ORDER BY next_attempt_at LIMIT :scan FOR UPDATE SKIP LOCKED" +
+                   "), picked AS (" +
+                   "  SELECT id FROM (SELECT id, next_attempt_at, ROW_NUMBER() OVER " +
+                   "    (PARTITION BY merchant_id ORDER BY next_attempt_at) AS rn FROM candidates) c " +
+                   "  WHERE rn <= :perMerchant ORDER BY next_attempt_at LIMIT :limit" +
+                   ") " +
+                   "UPDATE webhook_events e SET next_attempt_at = :leaseUntil " +
+                   "FROM picked WHERE e.id = picked.id RETURNING e.*",
+           nativeQuery = true)
+    List<WebhookEvent> claimDue(@Param("now") LocalDateTime now,
+                                @Param("leaseUntil") LocalDateTime leaseUntil,
+                                @Param("busy") String busy,
+                                @Param("perMerchant") int perMerchant,
+                                @Param("scan") int scan,
+                                @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvent e SET e.status = 'delivered', e.attempts = :attempts, " +
+           "e.lastResponseCode = :code, e.lastError = NULL, e.deliveredAt = :now WHERE e.id = :id")
+    int markDelivered(@Param("id") String id,
+                      @Param("attempts") int attempts,
+                      @Param("code") int code,
+                      @Param("now") LocalDateTime now);
+
+    /**
+     * Record a failed attempt: back to pending at {@code nextAttemptAt}, or
+     * dead-lettered when {@code status} is "dead".
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvent e SET e.status = :status, e.attempts = :attempts, " +
+           "e.nextAttemptAt = :nextAttemptAt, e.lastResponseCode = :code, e.lastError = :error " +
+           "WHERE e.id = :id")
+    int markFailed(@Param("id") String id,
+                   @Param("status") String status,
+                   @Param("attempts") int attempts,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("code") Integer code,
+                   @Param("error") String error);
+
+    @Query(value = "SELECT COUNT(*) AS backlog, MIN(created_at) AS oldest " +
+                   "FROM webhook_events WHERE status = 'pending'",
+           nativeQuery = true)
+    BacklogView backlog();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM webhook_events WHERE id IN " +
+                   "(SELECT id FROM webhook_events WHERE status IN ('delivered', 'dead') " +
+                   "AND created_at < :before LIMIT :limit)",
+           nativeQuery = true)
+    int deleteFinishedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    interface BacklogView {
+        long getBacklog();
+
+        LocalDateTime getOldest();
+    }
+}
@@ -0,0 +1,46 @@
+package com.gateway.services;
+
+import com.gateway.models.Payment;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Authorizes payments with the downstream rail: the UPI switch or a card
+ * network. PaymentProcessingEngine calls it from the payment's bulkhead and
+ * enforces the rail's timeout and circuit breaker, so an implementation
+ * only has to answer.
+ *
+ * {@link #authorize} must not block: it returns at once and completes the
+ * future when the answer arrives. A decline is a normal answer; a future
+ * completed exceptionally, or not within the timeout, counts against the
+ * rail's health.
+ *
+ * The bean used is picked by {@code app.acquirer.type}; SimulatedAcquirer
+ * ("simulator") is the default.
+ */
+public interface Acquirer {
+
+    CompletableFuture<Authorization> authorize(Payment payment);
+
+    record Authorization(boolean approved, String errorCode, String errorDescription) {
+
+        public static final Authorization APPROVED = new Authorization(true, null, null);
+
+        public static Authorization declined(String errorCode, String errorDescription) {
+            return new Authorization(false, errorCode, errorDescription);
+        }
+    }
+
+    /**
+     * The rail failed to answer: unreachable, or an error that says nothing
+     * about the payment itself.
+     */
+    class DownstreamException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public DownstreamException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package com.gateway.services;
 
+import org.springframework.http.HttpStatus;
+
 public class ApiException extends RuntimeException {
 
     private final String code;
+    private final HttpStatus status;
 
     public ApiException(String code, String message) {
+        this(code, message, HttpStatus.BAD_REQUEST);
+    }
+
+    public ApiException(String code, String message, HttpStatus status) {
         super(message);
         this.code = code;
+        this.status = status;
     }
 
     public String getCode() {
         return code;
     }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
 }
@@ -0,0 +1,84 @@
+package com.gateway.services;
+
+/**
+ * Result of a single pass over a card: length, Luhn, network, last 4 and expiry.
+ * Produced by {@link ValidationService#analyzeCard} and passed from the
+ * controller to {@link PaymentService} so a card is only scanned once.
+ */
+public final class CardAnalysis {
+
+    public enum Network {
+        VISA("visa"),
+        MASTERCARD("mastercard"),
+        AMEX("amex"),
+        RUPAY("rupay"),
+        UNKNOWN("unknown");
+
+        private final String code;
+
+        Network(String code) {
+            this.code = code;
+        }
+
+        public String code() {
+            return code;
+        }
+    }
+
+    static final CardAnalysis INVALID =
+            new CardAnalysis(false, false, Network.UNKNOWN, -1, false);
+
+    private final boolean validLength;
+    private final boolean luhnValid;
+    private final Network network;
+    private final int last4;
+    private final boolean expiryValid;
+
+    CardAnalysis(boolean validLength, boolean luhnValid, Network network, int last4, boolean expiryValid) {
+        this.validLength = validLength;
+        this.luhnValid = luhnValid;
+        this.network = network;
+        this.last4 = last4;
+        this.expiryValid = expiryValid;
+    }
+
+    public boolean isValid() {
+        return validLength && luhnValid && expiryValid;
+    }
+
+    public boolean isValidNumber() {
+        return validLength && luhnValid;
+    }
+
+    public boolean isValidLength() {
+        return validLength;
+    }
+
+    public boolean isLuhnValid() {
+        return luhnValid;
+    }
+
+    public boolean isExpiryValid() {
+        return expiryValid;
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * Last four digits, or "0000" when the number was too short.
+     */
+    public String getLast4() {
+        if (last4 < 0) {
+            return "0000";
+        }
+        int v = last4;
+        char[] digits = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            digits[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return new String(digits);
+    }
+}
@@ -0,0 +1,162 @@
+package com.gateway.services;
+
+import java.util.function.Consumer;
+
+/**
+ * Count-based circuit breaker for one acquirer rail.
+ *
+ * Closed, it keeps the outcome of the last {@code window} calls and opens
+ * once at least {@code minimumCalls} were made and {@code failureRate} of
+ * them failed. Open, it refuses calls for {@code openNanos}. Then it turns
+ * half-open and lets {@code halfOpenCalls} trial calls through: it closes
+ * when all of them succeed and reopens on the first failure. Other calls
+ * wait for the trials rather than being refused.
+ *
+ * Each state change starts a new generation and a permit carries the one
+ * it was granted in: a call that outlives its state, say one started
+ * before the breaker opened, does not count once it returns.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    enum Kind { CALL, REJECT, WAIT }
+
+    private final int minimumCalls;
+    private final double failureRate;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Consumer<State> onTransition;
+
+    // Ring of the last window outcomes, true for a failure.
+    private final boolean[] outcomes;
+    private int next;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int trials;
+    private int trialSuccesses;
+
+    CircuitBreaker(int window, int minimumCalls, double failureRate, long openNanos, int halfOpenCalls,
+                   Consumer<State> onTransition) {
+        this.outcomes = new boolean[window];
+        this.minimumCalls = Math.min(minimumCalls, window);
+        this.failureRate = failureRate;
+        this.openNanos = openNanos;
+        this.halfOpenCalls = halfOpenCalls;
+        this.onTransition = onTransition;
+    }
+
+    /**
+     * Whether a call may go to the rail now. Every {@code CALL} must be
+     * followed by {@link #onSuccess}, {@link #onFailure} or {@link #cancel}.
+     */
+    synchronized Permit tryAcquire() {
+        if (state == State.CLOSED) {
+            return new Permit(Kind.CALL, generation);
+        }
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return Permit.REJECT;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (trials < halfOpenCalls) {
+            trials++;
+            return new Permit(Kind.CALL, generation);
+        }
+        return Permit.WAIT;
+    }
+
+    /**
+     * Give back a {@code CALL} that was not made.
+     */
+    synchronized void cancel(Permit permit) {
+        if (permit.generation() == generation && state == State.HALF_OPEN && trials > 0) {
+            trials--;
+        }
+    }
+
+    /**
+     * Open and still refusing calls; new work for the rail is turned away.
+     */
+    synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    synchronized void onSuccess(Permit permit) {
+        record(permit, false);
+    }
+
+    synchronized void onFailure(Permit permit) {
+        record(permit, true);
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(Permit permit, boolean failed) {
+        if (permit.generation() != generation) {
+            // Started in an earlier state: says nothing about this one.
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                open();
+            } else if (++trialSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (calls == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        if (calls >= minimumCalls && failures >= failureRate * calls) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        trials = 0;
+        trialSuccesses = 0;
+        transition(State.OPEN);
+    }
+
+    private void close() {
+        next = 0;
+        calls = 0;
+        failures = 0;
+        transition(State.CLOSED);
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            state = to;
+            generation++;
+            onTransition.accept(to);
+        }
+    }
+
+    /**
+     * Whether to call; a {@code CALL} is handed back with its result.
+     */
+    record Permit(Kind kind, long generation) {
+
+        static final Permit REJECT = new Permit(Kind.REJECT, -1);
+        static final Permit WAIT = new Permit(Kind.WAIT, -1);
+    }
+}
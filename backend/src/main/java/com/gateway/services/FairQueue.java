@@ -0,0 +1,146 @@
+package com.gateway.services;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Deficit round robin queue: one FIFO per key (merchant) and a ring of the
+ * keys that have items. On its turn a key may hand out {@code weight} items
+ * before the next key's turn, so a key with a deep backlog delays the
+ * others by its weight per round, not by its whole backlog. Keys that run
+ * out of items leave the ring and lose their unused credit.
+ *
+ * Producers are lock-free: they append to their key's queue and put the
+ * key on the ring when it was not there. There is a single consumer at a
+ * time: {@link #poll} must not run concurrently with itself
+ * (PaymentProcessingEngine serializes its drains).
+ *
+ * Each key's queue is bounded by {@code maxQueued}: a slot is reserved with
+ * {@link #tryReserve} before the item is created and freed when it is
+ * polled, or given back with {@link #cancel}.
+ */
+public final class FairQueue<K, E> {
+
+    private final Function<K, Share> shares;
+    private final Map<K, Flow<E>> flows = new ConcurrentHashMap<>();
+    // Keys with items, each at most once.
+    private final Queue<Flow<E>> ring = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Consumer only: the key whose turn it is.
+    private Flow<E> current;
+
+    public FairQueue(Function<K, Share> shares) {
+        this.shares = shares;
+    }
+
+    /**
+     * Reserve room for one item of {@code key}; false when its queue is full.
+     */
+    public boolean tryReserve(K key) {
+        Flow<E> flow = flow(key);
+        if (flow.reserved.incrementAndGet() > flow.share.maxQueued()) {
+            flow.reserved.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Give back a reservation that was not used.
+     */
+    public void cancel(K key) {
+        flow(key).reserved.decrementAndGet();
+    }
+
+    /**
+     * Append an item to its key's queue. Must follow a successful {@link #tryReserve}.
+     */
+    public void offer(K key, E item) {
+        Flow<E> flow = flow(key);
+        flow.items.offer(item);
+        size.incrementAndGet();
+        if (flow.scheduled.compareAndSet(false, true)) {
+            ring.offer(flow);
+        }
+    }
+
+    /**
+     * The next item in deficit round robin order, or null. Single consumer.
+     */
+    public E poll() {
+        while (true) {
+            Flow<E> flow = current;
+            if (flow == null) {
+                flow = ring.poll();
+                if (flow == null) {
+                    return null;
+                }
+                flow.deficit += flow.share.weight();
+                current = flow;
+            }
+            if (flow.deficit > 0) {
+                E item = flow.items.poll();
+                if (item != null) {
+                    flow.deficit--;
+                    flow.reserved.decrementAndGet();
+                    size.decrementAndGet();
+                    return item;
+                }
+                // Ran dry: leave the ring, unless an item arrived meanwhile.
+                current = null;
+                flow.deficit = 0;
+                flow.scheduled.set(false);
+                if (!flow.items.isEmpty() && flow.scheduled.compareAndSet(false, true)) {
+                    ring.offer(flow);
+                }
+            } else {
+                // Used its turn: to the back of the ring.
+                current = null;
+                ring.offer(flow);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private Flow<E> flow(K key) {
+        Flow<E> flow = flows.get(key);
+        if (flow == null) {
+            flow = flows.computeIfAbsent(key, k -> new Flow<>(shares.apply(k)));
+        }
+        return flow;
+    }
+
+    /**
+     * A key's items per turn and bound on queued items.
+     */
+    public record Share(int weight, int maxQueued) {
+    }
+
+    private static final class Flow<E> {
+
+        final Share share;
+        final Queue<E> items = new ConcurrentLinkedQueue<>();
+        final AtomicInteger reserved = new AtomicInteger();
+        // On the ring, or about to be.
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        // Consumer only.
+        int deficit;
+
+        Flow(Share share) {
+            this.share = share;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.gateway.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background health checker behind /health, /health/live and /health/ready.
+ *
+ * A dedicated thread runs the validation query every
+ * {@code app.health.check-interval} and publishes an immutable
+ * {@link Snapshot}; probes only read the latest one. The query goes over
+ * the checker's own JDBC connection, not the Hikari pool, so a saturated
+ * pool neither delays the probe nor makes the database look down; pool
+ * saturation is reported next to it instead.
+ */
+@Service
+public class HealthMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(HealthMonitor.class);
+
+    private static final String VALIDATION_QUERY = "SELECT 1";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private PaymentProcessingEngine processingEngine;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.health.check-interval:2s}")
+    private Duration checkInterval;
+
+    @Value("${app.health.timeout:2s}")
+    private Duration timeout;
+
+    @Value("${app.health.max-age:10s}")
+    private Duration maxAge;
+
+    @Value("${app.health.liveness-max-age:60s}")
+    private Duration livenessMaxAge;
+
+    private ScheduledExecutorService checker;
+    private Connection connection;
+    private volatile Snapshot snapshot = Snapshot.STARTING;
+    private volatile long startedAt;
+    private volatile boolean draining;
+
+    @PostConstruct
+    void start() {
+        startedAt = System.currentTimeMillis();
+        checker = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("health-check-"));
+        checker.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        Gauge.builder("gateway.health.check.age", this, m -> m.snapshot.ageMillis() / 1000.0)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onShutdown() {
+        // Fail readiness first so load balancers stop routing before the server stops.
+        draining = true;
+    }
+
+    @PreDestroy
+    void stop() {
+        checker.shutdownNow();
+        closeConnection();
+    }
+
+    /* ================= PROBES ================= */
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Ready for traffic: the database answered in the last check, that check
+     * is recent, and the node is not shutting down.
+     */
+    public boolean isReady() {
+        Snapshot current = snapshot;
+        return !draining && current.databaseUp() && current.ageMillis() <= maxAge.toMillis();
+    }
+
+    /**
+     * Alive unless the checker itself has stopped making progress, which
+     * means the JVM is wedged rather than the database being down. Before
+     * the first check the time since startup counts instead.
+     */
+    public boolean isLive() {
+        Snapshot current = snapshot;
+        long age = current == Snapshot.STARTING
+                ? System.currentTimeMillis() - startedAt : current.ageMillis();
+        return age <= livenessMaxAge.toMillis();
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /* ================= CHECK ================= */
+
+    private void check() {
+        long started = System.nanoTime();
+        boolean databaseUp;
+        String error = null;
+        try {
+            databaseUp = validate();
+        } catch (SQLException | RuntimeException e) {
+            databaseUp = false;
+            error = e.getMessage();
+            closeConnection();
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+
+        Snapshot next = new Snapshot(Instant.now(), databaseUp, latencyMicros / 1000.0, error,
+                pool(), processingEngine.getQueueDepth(), processingEngine.getInFlight());
+        if (snapshot.databaseUp() != databaseUp && snapshot != Snapshot.STARTING) {
+            log.warn("Database health changed to {}{}", databaseUp ? "up" : "down",
+                    error != null ? ": " + error : "");
+        }
+        snapshot = next;
+    }
+
+    private boolean validate() throws SQLException {
+        int seconds = (int) Math.max(1, timeout.toSeconds());
+        if (connection == null || connection.isClosed()) {
+            Properties props = new Properties();
+            props.setProperty("user", dataSourceProperties.determineUsername());
+            props.setProperty("password", dataSourceProperties.determinePassword());
+            props.setProperty("connectTimeout", Integer.toString(seconds));
+            props.setProperty("loginTimeout", Integer.toString(seconds));
+            props.setProperty("socketTimeout", Integer.toString(seconds + 1));
+            props.setProperty("ApplicationName", "payment-gateway-health");
+            connection = DriverManager.getConnection(dataSourceProperties.determineUrl(), props);
+            connection.setReadOnly(true);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(seconds);
+            try (ResultSet rs = statement.executeQuery(VALIDATION_QUERY)) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // already broken
+            }
+            connection = null;
+        }
+    }
+
+    private Pool pool() {
+        HikariDataSource hikari;
+        try {
+            // With read replicas the bean is a router; this is its primary pool.
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return null;
+            }
+            hikari = dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException e) {
+            return null;
+        }
+        HikariPoolMXBean mx = hikari.getHikariPoolMXBean();
+        if (mx == null) {
+            return null; // pool not started yet
+        }
+        return new Pool(mx.getActiveConnections(), mx.getIdleConnections(), hikari.getMaximumPoolSize(),
+                mx.getThreadsAwaitingConnection());
+    }
+
+    /* ================= SNAPSHOT ================= */
+
+    public record Pool(int active, int idle, int max, int waiting) {
+
+        public double saturation() {
+            return max == 0 ? 0 : (double) active / max;
+        }
+    }
+
+    public record Snapshot(Instant checkedAt, boolean databaseUp, double databaseLatencyMs, String error,
+                           Pool pool, int processingQueueDepth, int processingInFlight) {
+
+        static final Snapshot STARTING = new Snapshot(null, false, 0, "not checked yet", null, 0, 0);
+
+        /**
+         * Milliseconds since the check, or Long.MAX_VALUE before the first one.
+         */
+        public long ageMillis() {
+            return checkedAt == null ? Long.MAX_VALUE
+                    : Math.max(0, System.currentTimeMillis() - checkedAt.toEpochMilli());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.gateway.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generates order_/pay_/evt_ IDs: prefix + 16 base62 characters, unique without
+ * a database lookup.
+ *
+ * The first 7 characters encode milliseconds since 2024-01-01, so IDs sort by
+ * creation time (byte-wise, as in the C collation) and primary-key inserts
+ * land at the right edge of the index. The remaining 9 characters hold:
+ *
+ * <pre>
+ *   node (10 bits) | lane (5 bits) | sequence (14 bits) | random (24 bits)
+ * </pre>
+ *
+ * Each lane keeps its own (millis, sequence) counter in a padded slot and
+ * threads are spread over lanes, so callers on different cores rarely touch
+ * the same cache line. A lane that exhausts its sequence within one
+ * millisecond borrows the next millisecond instead of waiting. The random
+ * bits keep IDs unguessable for the public checkout endpoints.
+ */
+@Service
+public class IdGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGenerator.class);
+
+    public static final String ORDER_PREFIX = "order_";
+    public static final String PAYMENT_PREFIX = "pay_";
+    public static final String EVENT_PREFIX = "evt_";
+
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    private static final int TIME_CHARS = 7;
+    private static final int TAIL_CHARS = 9;
+
+    private static final int NODE_BITS = 10;
+    private static final int LANE_BITS = 5;
+    private static final int SEQUENCE_BITS = 14;
+    private static final int RANDOM_BITS = 24;
+
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final int LANES = 1 << LANE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long RANDOM_MASK = (1L << RANDOM_BITS) - 1;
+
+    // One long per lane, 8 slots apart so lanes never share a cache line.
+    private static final int STRIDE = 8;
+
+    private final int nodeId;
+    private final long nodeBits;
+    private final AtomicLongArray lanes = new AtomicLongArray(LANES * STRIDE);
+
+    public IdGenerator(@Value("${app.id.node-id:-1}") int nodeId) {
+        if (nodeId < 0) {
+            nodeId = deriveNodeId();
+            log.warn("app.id.node-id not set, derived node id {} from host name; " +
+                     "set it explicitly when running several replicas", nodeId);
+        }
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("app.id.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.nodeBits = (long) nodeId << (LANE_BITS + SEQUENCE_BITS + RANDOM_BITS);
+    }
+
+    /** This node's ID, unique among the replicas sharing a database. */
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public String newOrderId() {
+        return next(ORDER_PREFIX);
+    }
+
+    public String newPaymentId() {
+        return next(PAYMENT_PREFIX);
+    }
+
+    public String newEventId() {
+        return next(EVENT_PREFIX);
+    }
+
+    private String next(String prefix) {
+        int lane = (int) Thread.currentThread().getId() & (LANES - 1);
+        int slot = lane * STRIDE;
+
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        long prev;
+        long state;
+        do {
+            prev = lanes.get(slot);
+            long prevMillis = prev >>> SEQUENCE_BITS;
+            if (now > prevMillis) {
+                state = now << SEQUENCE_BITS;
+            } else {
+                // Same millisecond, or the clock moved back: keep counting.
+                state = prev + 1;
+            }
+        } while (!lanes.compareAndSet(slot, prev, state));
+
+        long millis = state >>> SEQUENCE_BITS;
+        long tail = nodeBits
+                | ((long) lane << (SEQUENCE_BITS + RANDOM_BITS))
+                | ((state & SEQUENCE_MASK) << RANDOM_BITS)
+                | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+
+        int p = prefix.length();
+        char[] id = new char[p + TIME_CHARS + TAIL_CHARS];
+        prefix.getChars(0, p, id, 0);
+        encode(millis, id, p, TIME_CHARS);
+        encode(tail, id, p + TIME_CHARS, TAIL_CHARS);
+        return new String(id);
+    }
+
+    /**
+     * When {@code id} was generated, read back from its time prefix; null for
+     * IDs in another format (e.g. issued before this generator existed).
+     */
+    public static Instant timestampOf(String id) {
+        int start = id == null ? 0 : id.indexOf('_') + 1;
+        if (start == 0 || id.length() != start + TIME_CHARS + TAIL_CHARS) {
+            return null;
+        }
+        long millis = 0;
+        for (int i = start; i < start + TIME_CHARS; i++) {
+            int digit = digit(id.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            millis = millis * 62 + digit;
+        }
+        return Instant.ofEpochMilli(EPOCH_MILLIS + millis);
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'z') return c - 'a' + 36;
+        return -1;
+    }
+
+    private static void encode(long value, char[] out, int offset, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            out[i] = ALPHABET[(int) (value % 62)];
+            value /= 62;
+        }
+    }
+
+    private static int deriveNodeId() {
+        String host = System.getenv("HOSTNAME");
+        if (host == null) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "localhost";
+            }
+        }
+        return (host.hashCode() & 0x7fffffff) % (MAX_NODE_ID + 1);
+    }
+}
@@ -0,0 +1,293 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.models.IdempotencyRecord;
+import com.gateway.repositories.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for POST endpoints, scoped per merchant.
+ *
+ * Lookups go to a bounded in-memory tier first, then to idempotency_keys.
+ * The first request for a key claims a row before running; duplicates on the
+ * same node wait for it, duplicates on another node get 409 until it finishes.
+ * Responses below 500 are stored and replayed byte for byte.
+ *
+ * Running the action and storing its response are separate commits, so a
+ * request that dies in between may have created its order or payment. Its
+ * row stays in progress, and once {@code lock-timeout} has passed duplicates
+ * get 409 IDEMPOTENCY_KEY_UNRESOLVED rather than running the action again:
+ * the client has to look the result up before retrying under a new key.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${app.idempotency.lock-timeout:60s}")
+    private Duration lockTimeout;
+
+    @Value("${app.idempotency.wait-timeout:30s}")
+    private Duration waitTimeout;
+
+    @Value("${app.idempotency.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    @Value("${app.idempotency.cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    private Cache<String, StoredResponse> responses;
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter originalCounter;
+    private Counter memoryReplayCounter;
+    private Counter databaseReplayCounter;
+    private Counter conflictCounter;
+
+    @PostConstruct
+    void init() {
+        responses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl.compareTo(ttl) < 0 ? cacheTtl : ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "idempotency.responses");
+
+        originalCounter = meterRegistry.counter("gateway.idempotency.requests", "outcome", "original");
+        memoryReplayCounter = meterRegistry.counter("gateway.idempotency.requests", "outcome", "replay", "tier", "memory");
+        databaseReplayCounter = meterRegistry.counter("gateway.idempotency.requests", "outcome", "replay", "tier", "database");
+        conflictCounter = meterRegistry.counter("gateway.idempotency.requests", "outcome", "conflict");
+    }
+
+    /**
+     * Run {@code action} at most once per (merchant, key). Without a key the
+     * action simply runs. {@code scope} separates endpoints sharing a key.
+     */
+    public ResponseEntity<?> execute(UUID merchantId, String key, String scope, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ApiException("BAD_REQUEST_ERROR",
+                    HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = fingerprint(scope, request);
+        String cacheKey = merchantId + ":" + key;
+
+        StoredResponse cached = responses.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash, memoryReplayCounter);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.putIfAbsent(cacheKey, mine);
+        if (existing != null) {
+            StoredResponse stored = await(existing);
+            return replay(stored, requestHash, memoryReplayCounter);
+        }
+
+        try {
+            Outcome outcome = runOnce(merchantId, key, requestHash, action);
+            if (outcome.stored != null) {
+                responses.put(cacheKey, outcome.stored);
+            }
+            mine.complete(outcome.stored);
+            if (outcome.replayed) {
+                return replay(outcome.stored, requestHash, databaseReplayCounter);
+            }
+            return outcome.response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    private Outcome runOnce(UUID merchantId, String key, String requestHash,
+                            Supplier<ResponseEntity<?>> action) {
+        LocalDateTime now = LocalDateTime.now();
+        long started = RequestStages.start();
+        int claimed = repository.claim(merchantId, key, requestHash, now,
+                now.plus(lockTimeout), now.plus(ttl));
+        RequestStages.end("idempotency", started);
+
+        if (claimed == 0) {
+            IdempotencyRecord record = repository.findById(new IdempotencyRecord.Key(merchantId, key))
+                    .orElseThrow(this::inProgress);
+            if (!IdempotencyRecord.COMPLETED.equals(record.getStatus())) {
+                throw record.getLockedUntil().isBefore(now) ? unresolved() : inProgress();
+            }
+            return new Outcome(new StoredResponse(record.getRequestHash(), record.getResponseCode(),
+                    record.getResponseBody().getBytes(StandardCharsets.UTF_8)), null, true);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            repository.release(merchantId, key);
+            throw e;
+        }
+
+        int code = response.getStatusCode().value();
+        if (code >= 500) {
+            repository.release(merchantId, key);
+            return new Outcome(null, response, false);
+        }
+
+        byte[] body = serialize(response.getBody());
+        started = RequestStages.start();
+        repository.complete(merchantId, key, code, new String(body, StandardCharsets.UTF_8));
+        RequestStages.end("idempotency", started);
+        originalCounter.increment();
+
+        StoredResponse stored = new StoredResponse(requestHash, code, body);
+        return new Outcome(stored, toResponse(stored, false), false);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> first) {
+        try {
+            StoredResponse stored = first.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (stored == null) {
+                // The first request failed with a 5xx and was not stored.
+                throw inProgress();
+            }
+            return stored;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        }
+    }
+
+    // Counted as a replay only once the request matches the stored one.
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash, Counter replayCounter) {
+        if (!stored.requestHash.equals(requestHash)) {
+            throw new ApiException("IDEMPOTENCY_KEY_REUSED",
+                    HEADER + " was already used with a different request",
+                    HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        replayCounter.increment();
+        return toResponse(stored, true);
+    }
+
+    private ApiException inProgress() {
+        conflictCounter.increment();
+        return new ApiException("IDEMPOTENCY_KEY_IN_PROGRESS",
+                "A request with this " + HEADER + " is still being processed",
+                HttpStatus.CONFLICT);
+    }
+
+    private ApiException unresolved() {
+        conflictCounter.increment();
+        return new ApiException("IDEMPOTENCY_KEY_UNRESOLVED",
+                "The first request with this " + HEADER + " did not finish; check whether it took effect "
+                        + "before retrying with a new key",
+                HttpStatus.CONFLICT);
+    }
+
+    private static ResponseEntity<byte[]> toResponse(StoredResponse stored, boolean replayed) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.code)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (replayed) {
+            builder.header(REPLAYED_HEADER, "true");
+        }
+        return builder.body(stored.body);
+    }
+
+    private String fingerprint(String scope, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(scope.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ================= EXPIRY ================= */
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:600000}")
+    public void deleteExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted;
+        int total = 0;
+        do {
+            deleted = repository.deleteExpired(now, CLEANUP_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == CLEANUP_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Deleted {} expired idempotency keys", total);
+        }
+    }
+
+    private record StoredResponse(String requestHash, int code, byte[] body) {}
+
+    private record Outcome(StoredResponse stored, ResponseEntity<?> response, boolean replayed) {}
+}
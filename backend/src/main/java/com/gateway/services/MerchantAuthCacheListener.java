@@ -0,0 +1,54 @@
+package com.gateway.services;
+
+import com.gateway.models.Merchant;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Evicts cached credentials and webhook endpoints when a merchant is created,
+ * updated or deleted (new key previously cached as unknown, secret rotation,
+ * deactivation, new webhook URL), once the change is committed.
+ */
+public class MerchantAuthCacheListener {
+
+    // Resolved lazily: listeners are built with the EntityManagerFactory,
+    // before the repositories MerchantAuthService depends on exist.
+    @Autowired
+    private ObjectProvider<MerchantAuthService> merchantAuthService;
+
+    @Autowired
+    private ObjectProvider<WebhookService> webhookService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(Merchant merchant) {
+        // Evicting before the commit would let a concurrent request cache the old row again.
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(merchant);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(merchant);
+            }
+        });
+    }
+
+    private void evict(Merchant merchant) {
+        MerchantAuthService service = merchantAuthService.getIfAvailable();
+        if (service != null) {
+            service.invalidate(merchant);
+        }
+        WebhookService webhooks = webhookService.getIfAvailable();
+        if (webhooks != null) {
+            webhooks.invalidate(merchant.getId());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.gateway.services;
+
+import com.gateway.models.Merchant;
+import com.gateway.repositories.MerchantRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Authenticates merchants by API key and secret.
+ *
+ * Known keys are cached for {@code app.auth.cache.ttl}, unknown keys for the
+ * shorter {@code app.auth.cache.negative-ttl}, so a warm key never reaches
+ * the database. Changes made through JPA invalidate the cache immediately;
+ * changes made elsewhere are picked up when the entry expires.
+ */
+@Service
+public class MerchantAuthService {
+
+    /**
+     * Request attribute with the merchant config.RateLimitInterceptor
+     * authenticated, so the controller does not check the credentials again.
+     */
+    public static final String MERCHANT_ATTRIBUTE = "com.gateway.services.MerchantAuthService.merchant";
+
+    @Autowired
+    private MerchantRepository merchantRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.auth.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.auth.cache.ttl:60s}")
+    private Duration ttl;
+
+    @Value("${app.auth.cache.negative-ttl:5s}")
+    private Duration negativeTtl;
+
+    private Cache<String, Credentials> credentials;
+    private Cache<String, Boolean> unknownKeys;
+
+    @PostConstruct
+    void init() {
+        credentials = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        unknownKeys = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, credentials, "merchant.auth");
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownKeys, "merchant.auth.unknown");
+    }
+
+    /**
+     * Returns the merchant for valid, active credentials, otherwise null.
+     */
+    public Merchant authenticate(String apiKey, String apiSecret) {
+        long started = RequestStages.start();
+        try {
+            return check(apiKey, apiSecret);
+        } finally {
+            RequestStages.end("auth", started);
+        }
+    }
+
+    private Merchant check(String apiKey, String apiSecret) {
+        if (apiKey == null || apiSecret == null) {
+            return null;
+        }
+
+        Credentials cached = credentials.getIfPresent(apiKey);
+        if (cached == null) {
+            if (unknownKeys.getIfPresent(apiKey) != null) {
+                return null;
+            }
+            cached = load(apiKey);
+            if (cached == null) {
+                return null;
+            }
+        }
+
+        if (!cached.active()) {
+            return null;
+        }
+        byte[] given = apiSecret.getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(cached.secret(), given) ? cached.merchant() : null;
+    }
+
+    private Credentials load(String apiKey) {
+        Optional<Merchant> merchantOpt = merchantRepository.findByApiKey(apiKey);
+        if (merchantOpt.isEmpty()) {
+            unknownKeys.put(apiKey, Boolean.TRUE);
+            return null;
+        }
+        Credentials loaded = Credentials.of(merchantOpt.get());
+        credentials.put(apiKey, loaded);
+        return loaded;
+    }
+
+    /* ================= INVALIDATION ================= */
+
+    /**
+     * Drop every cached entry for the merchant, including ones stored
+     * under a key it no longer has.
+     */
+    public void invalidate(Merchant merchant) {
+        UUID id = merchant.getId();
+        credentials.asMap().values().removeIf(c -> c.merchant().getId().equals(id));
+        if (merchant.getApiKey() != null) {
+            credentials.invalidate(merchant.getApiKey());
+            unknownKeys.invalidate(merchant.getApiKey());
+        }
+    }
+
+    public void invalidateAll() {
+        credentials.invalidateAll();
+        unknownKeys.invalidateAll();
+    }
+
+    private record Credentials(Merchant merchant, byte[] secret, boolean active) {
+
+        static Credentials of(Merchant merchant) {
+            return new Credentials(
+                    merchant,
+                    merchant.getApiSecret().getBytes(StandardCharsets.UTF_8),
+                    !Boolean.FALSE.equals(merchant.getIsActive()));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.gateway.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-merchant request rate and concurrency limits for the authenticated API.
+ *
+ * Each (merchant, endpoint) pair has a token bucket kept as a single
+ * AtomicLong (GCRA: the time at which the bucket would be full again), and
+ * each merchant has an in-flight counter. Both are updated with CAS, so there
+ * is no lock and, once a merchant's quota exists, nothing is allocated for
+ * an admitted request.
+ *
+ * Limits come from app.ratelimit.*, most specific first:
+ * merchants.&lt;id&gt;.endpoints.&lt;endpoint&gt;, merchants.&lt;id&gt;,
+ * endpoints.&lt;endpoint&gt;, then the defaults. Endpoints are named after
+ * the controller method (createPayment, listOrders, ...). Settings are read
+ * once per merchant and endpoint.
+ */
+@Service
+public class MerchantRateLimiter {
+
+    private static final String PREFIX = "app.ratelimit.";
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ratelimit.rate:100}")
+    private double defaultRate;
+
+    @Value("${app.ratelimit.burst:200}")
+    private double defaultBurst;
+
+    @Value("${app.ratelimit.max-concurrent:50}")
+    private int defaultMaxConcurrent;
+
+    private final Map<UUID, MerchantQuota> quotas = new ConcurrentHashMap<>();
+
+    /**
+     * Admit one request, or throw {@link RateLimitExceededException}. The
+     * returned quota must be released when the request ends; null when
+     * limiting is disabled.
+     */
+    public MerchantQuota acquire(UUID merchantId, String endpoint) {
+        if (!enabled) {
+            return null;
+        }
+        MerchantQuota quota = quotas.get(merchantId);
+        if (quota == null) {
+            quota = quotas.computeIfAbsent(merchantId, MerchantQuota::new);
+        }
+        quota.acquire(endpoint);
+        return quota;
+    }
+
+    private <T> T setting(UUID merchantId, String endpoint, String name, Class<T> type, T fallback) {
+        String merchant = PREFIX + "merchants." + merchantId + ".";
+        String[] keys = endpoint == null
+                ? new String[] {merchant + name}
+                : new String[] {merchant + "endpoints." + endpoint + "." + name,
+                                merchant + name,
+                                PREFIX + "endpoints." + endpoint + "." + name};
+        for (String key : keys) {
+            T value = environment.getProperty(key, type);
+            if (value != null) {
+                return value;
+            }
+        }
+        return fallback;
+    }
+
+    /* ================= QUOTAS ================= */
+
+    public final class MerchantQuota {
+
+        private final UUID merchantId;
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final int maxConcurrent;
+        private final Counter concurrencyThrottled;
+
+        private MerchantQuota(UUID merchantId) {
+            this.merchantId = merchantId;
+            this.maxConcurrent = setting(merchantId, null, "max-concurrent", Integer.class, defaultMaxConcurrent);
+            this.concurrencyThrottled = throttledCounter(merchantId, "all", "concurrency");
+        }
+
+        private void acquire(String endpoint) {
+            TokenBucket bucket = buckets.get(endpoint);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(endpoint, this::newBucket);
+            }
+            // The slot first: a request turned away for concurrency keeps its token.
+            if (maxConcurrent > 0 && inFlight.incrementAndGet() > maxConcurrent) {
+                inFlight.decrementAndGet();
+                concurrencyThrottled.increment();
+                throw new RateLimitExceededException("CONCURRENCY_LIMIT_EXCEEDED",
+                        "Too many concurrent requests, retry later", 1);
+            }
+            long waitNanos = bucket.take(System.nanoTime());
+            if (waitNanos > 0) {
+                release();
+                bucket.throttled.increment();
+                throw new RateLimitExceededException("RATE_LIMIT_EXCEEDED",
+                        "Too many requests, retry later",
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+            }
+        }
+
+        public void release() {
+            if (maxConcurrent > 0) {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private TokenBucket newBucket(String endpoint) {
+            double rate = setting(merchantId, endpoint, "rate", Double.class, defaultRate);
+            double burst = setting(merchantId, endpoint, "burst", Double.class, defaultBurst);
+            return new TokenBucket(rate, Math.max(burst, 1),
+                    throttledCounter(merchantId, endpoint, "rate"));
+        }
+    }
+
+    private Counter throttledCounter(UUID merchantId, String endpoint, String reason) {
+        return Counter.builder("gateway.ratelimit.throttled")
+                .description("Requests rejected with 429")
+                .tag("merchant", merchantId.toString())
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Token bucket as GCRA: {@code full} is when the bucket would be full
+     * again. A request costs one emission interval; it is admitted if that
+     * keeps {@code full} within {@code burst} intervals of now.
+     */
+    static final class TokenBucket {
+
+        private final long intervalNanos;
+        private final long capacityNanos;
+        private final AtomicLong full;
+        private final Counter throttled;
+
+        TokenBucket(double rate, double burst, Counter throttled) {
+            // rate <= 0 means unlimited
+            this.intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+            this.capacityNanos = (long) (intervalNanos * burst);
+            this.full = new AtomicLong(System.nanoTime());
+            this.throttled = throttled;
+        }
+
+        /**
+         * @return 0 if admitted, otherwise how long until a token is available
+         */
+        long take(long now) {
+            if (intervalNanos == 0) {
+                return 0;
+            }
+            for (;;) {
+                long current = full.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long excess = next - now - capacityNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (full.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.gateway.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Spreads {@link PublicOrderCache} evictions to the other nodes over
+ * Postgres LISTEN/NOTIFY, so no node keeps serving an order another node
+ * changed.
+ *
+ * One thread owns a JDBC connection outside the Hikari pool that LISTENs on
+ * {@link #CHANNEL}. Evictions are queued and sent by the same thread, many
+ * IDs per NOTIFY, within {@code interval} of being queued; each payload
+ * starts with the sending node's ID so a node skips its own. A node misses
+ * whatever is sent while it is disconnected, so it clears its cache on
+ * every connect and is not {@link #isConnected connected} until then.
+ */
+@Service
+public class OrderCacheBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderCacheBroadcaster.class);
+
+    static final String CHANNEL = "order_cache";
+    private static final String NOTIFY_SQL = "SELECT pg_notify('" + CHANNEL + "', ?)";
+    // Postgres rejects payloads of 8000 bytes or more; order IDs are ASCII.
+    private static final int MAX_PAYLOAD = 7900;
+    private static final String ALL = "*";
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.orders.public-cache.broadcast.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.orders.public-cache.broadcast.interval:20ms}")
+    private Duration interval;
+
+    @Value("${app.orders.public-cache.broadcast.retry-delay:1s}")
+    private Duration retryDelay;
+
+    @Value("${app.orders.public-cache.broadcast.max-pending:100000}")
+    private int maxPending;
+
+    private final String nodeId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final Queue<String> outgoing = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private ExecutorService executor;
+    private Connection connection;
+    private volatile boolean running;
+    private volatile boolean connected;
+    // Set when queued evictions were dropped: the other nodes are told to clear everything.
+    private volatile boolean evictAllPending;
+    private volatile Consumer<String> onEvict = id -> { };
+    private volatile Runnable onEvictAll = () -> { };
+
+    private Counter sentCounter;
+    private Counter receivedCounter;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        sentCounter = meterRegistry.counter("gateway.orders.public-cache.broadcast.sent");
+        receivedCounter = meterRegistry.counter("gateway.orders.public-cache.broadcast.received");
+        Gauge.builder("gateway.orders.public-cache.broadcast.connected", this, b -> b.connected ? 1 : 0)
+                .register(meterRegistry);
+        running = true;
+        executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("order-cache-broadcast-"));
+        executor.execute(this::run);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (executor != null) {
+            running = false;
+            executor.shutdown();
+            executor.awaitTermination(interval.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Where evictions from other nodes go.
+     */
+    void setReceiver(Consumer<String> onEvict, Runnable onEvictAll) {
+        this.onEvict = onEvict;
+        this.onEvictAll = onEvictAll;
+    }
+
+    /**
+     * Whether this node hears every other node's evictions; always true when
+     * broadcasting is off (a single node).
+     */
+    public boolean isConnected() {
+        return !enabled || connected;
+    }
+
+    /**
+     * Tell the other nodes to evict {@code orderId}. Call after the change
+     * is committed, or a node could reload the old row.
+     */
+    public void publish(String orderId) {
+        if (!enabled) {
+            return;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            evictAllPending = true;
+            return;
+        }
+        outgoing.add(orderId);
+    }
+
+    public void publishAll() {
+        if (enabled) {
+            evictAllPending = true;
+        }
+    }
+
+    /* ================= CONNECTION ================= */
+
+    private void run() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    connect();
+                }
+                send();
+                receive();
+            } catch (SQLException | RuntimeException e) {
+                if (connected) {
+                    log.warn("Lost order cache broadcast connection, retrying every {}: {}", retryDelay, e.getMessage());
+                }
+                connected = false;
+                closeConnection();
+                try {
+                    Thread.sleep(retryDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+        connected = false;
+        closeConnection();
+    }
+
+    private void connect() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", dataSourceProperties.determineUsername());
+        props.setProperty("password", dataSourceProperties.determinePassword());
+        props.setProperty("connectTimeout", Long.toString(Math.max(1, retryDelay.toSeconds())));
+        props.setProperty("tcpKeepAlive", "true");
+        props.setProperty("ApplicationName", "payment-gateway-cache");
+        connection = DriverManager.getConnection(dataSourceProperties.determineUrl(), props);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        }
+        // Anything sent while this node was not listening is lost to it.
+        onEvictAll.run();
+        connected = true;
+        log.info("Listening for order cache evictions as node {}", nodeId);
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // already broken
+            }
+            connection = null;
+        }
+    }
+
+    /* ================= SEND ================= */
+
+    private void send() throws SQLException {
+        if (outgoing.isEmpty() && !evictAllPending) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(NOTIFY_SQL)) {
+            if (evictAllPending) {
+                evictAllPending = false;
+                while (outgoing.poll() != null) {
+                    pending.decrementAndGet();
+                }
+                notify(statement, new StringBuilder(nodeId).append(' ').append(ALL));
+                return;
+            }
+            StringBuilder payload = new StringBuilder(nodeId);
+            int ids = 0;
+            String id;
+            while ((id = outgoing.poll()) != null) {
+                pending.decrementAndGet();
+                if (payload.length() + 1 + id.length() > MAX_PAYLOAD) {
+                    notify(statement, payload);
+                    payload.setLength(nodeId.length());
+                }
+                payload.append(' ').append(id);
+                ids++;
+            }
+            if (payload.length() > nodeId.length()) {
+                notify(statement, payload);
+            }
+            sentCounter.increment(ids);
+        } catch (SQLException e) {
+            // What was taken off the queue may not have gone out.
+            evictAllPending = true;
+            throw e;
+        }
+    }
+
+    private static void notify(PreparedStatement statement, StringBuilder payload) throws SQLException {
+        statement.setString(1, payload.toString());
+        statement.execute();
+    }
+
+    /* ================= RECEIVE ================= */
+
+    private void receive() throws SQLException {
+        PGNotification[] notifications = connection.unwrap(PGConnection.class)
+                .getNotifications((int) Math.max(1, interval.toMillis()));
+        if (notifications == null) {
+            return;
+        }
+        for (PGNotification notification : notifications) {
+            String[] parts = notification.getParameter().split(" ");
+            if (parts[0].equals(nodeId)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                if (ALL.equals(parts[i])) {
+                    onEvictAll.run();
+                } else {
+                    onEvict.accept(parts[i]);
+                }
+            }
+            receivedCounter.increment(parts.length - 1);
+        }
+    }
+}
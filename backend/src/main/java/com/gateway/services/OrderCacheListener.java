@@ -0,0 +1,31 @@
+package com.gateway.services;
+
+import com.gateway.models.Order;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Evicts the cached public view once an order is created (its ID may have
+ * been cached as unknown), updated or deleted and the change committed.
+ * Bulk JPQL updates bypass entity listeners and must call
+ * {@link PublicOrderCache#invalidateAfterCommit} themselves.
+ */
+public class OrderCacheListener {
+
+    // Resolved lazily, see MerchantAuthCacheListener.
+    @Autowired
+    private ObjectProvider<PublicOrderCache> publicOrderCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(Order order) {
+        PublicOrderCache cache = publicOrderCache.getIfAvailable();
+        if (cache != null) {
+            cache.invalidateAfterCommit(order.getId());
+        }
+    }
+}
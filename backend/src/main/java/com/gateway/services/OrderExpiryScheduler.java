@@ -0,0 +1,320 @@
+package com.gateway.services;
+
+import com.gateway.models.Order;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires orders left unpaid past their expires_at, without scanning the
+ * orders table: deadlines wait in a {@link TimingWheel} and each tick
+ * expires what came due with batched conditional updates.
+ *
+ * The wheel only holds the next {@code horizon} of deadlines. Every
+ * {@code refill-interval} the following window is read in keyset pages from
+ * idx_orders_expiring (the first read, at startup, also picks up everything
+ * already overdue), so memory follows the orders expiring soon rather than
+ * all open orders, and orders created on other nodes are covered too. New
+ * orders due inside the loaded window are scheduled directly.
+ *
+ * Orders paid or being paid by then are left alone by the update; one whose
+ * payment fails after the deadline is expired by OrderStateMachine#settle.
+ * Orders expired here are remembered for a while, so a payment attempt on
+ * one is refused without reading it.
+ */
+@Service
+public class OrderExpiryScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExpiryScheduler.class);
+
+    public static final Duration MIN_TTL = Duration.ofMinutes(1);
+
+    private static final String PREFIX = "app.orders.expiry.";
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String EXPIRE_SQL =
+            "UPDATE orders SET status = 'expired', version = version + 1, updated_at = ? " +
+            "WHERE id = ? AND created_at = ? AND status IN ('created', 'attempted') AND expires_at <= ?";
+
+    private static final String LOAD_SQL =
+            "SELECT id, merchant_id, created_at, expires_at FROM orders " +
+            "WHERE status IN ('created', 'processing', 'attempted') AND expires_at IS NOT NULL " +
+            "AND (expires_at, id) > (?, ?) AND expires_at < ? ORDER BY expires_at, id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PublicOrderCache publicOrderCache;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.orders.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.orders.expiry.ttl:24h}")
+    private Duration defaultTtl;
+
+    @Value("${app.orders.expiry.max-ttl:30d}")
+    private Duration maxTtl;
+
+    @Value("${app.orders.expiry.tick:1s}")
+    private Duration tick;
+
+    @Value("${app.orders.expiry.horizon:30m}")
+    private Duration horizon;
+
+    @Value("${app.orders.expiry.refill-interval:5m}")
+    private Duration refillInterval;
+
+    @Value("${app.orders.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.orders.expiry.retry-delay:10s}")
+    private Duration retryDelay;
+
+    @Value("${app.orders.expiry.recent.max-size:100000}")
+    private long recentMaxSize;
+
+    // Filled by request threads, moved into the wheel by the expiry thread.
+    private final Queue<Expiring> inbox = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Duration> merchantTtls = new ConcurrentHashMap<>();
+
+    private TimingWheel<Expiring> wheel;
+    private ScheduledExecutorService executor;
+    private Cache<String, UUID> recentlyExpired;
+
+    // Keyset position up to which deadlines have been read into the wheel.
+    private LocalDateTime loadedAt = KEYSET_START;
+    private String loadedId = "";
+    private long nextRefill;
+    private volatile int scheduled;
+
+    private Counter expiredCounter;
+    private Counter loadedCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    void start() {
+        recentlyExpired = Caffeine.newBuilder()
+                .maximumSize(recentMaxSize)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+        if (!enabled) {
+            return;
+        }
+        wheel = new TimingWheel<>(tick.toMillis(), System.currentTimeMillis());
+        expiredCounter = meterRegistry.counter("gateway.orders.expiry.expired");
+        loadedCounter = meterRegistry.counter("gateway.orders.expiry.loaded");
+        flushTimer = meterRegistry.timer("gateway.orders.expiry.flush");
+        Gauge.builder("gateway.orders.expiry.scheduled", this, s -> s.scheduled)
+                .description("Order deadlines waiting in the timing wheel")
+                .register(meterRegistry);
+
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("order-expiry-"));
+        executor.scheduleWithFixedDelay(this::run, 0, tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /* ================= TTL ================= */
+
+    /**
+     * When an order created now expires: after {@code expiresIn} seconds if
+     * given, else after the merchant's TTL. Null when it never does.
+     */
+    public LocalDateTime expiresAt(UUID merchantId, Long expiresIn) {
+        if (!enabled) {
+            return null;
+        }
+        Duration ttl = expiresIn != null ? Duration.ofSeconds(expiresIn) : merchantTtl(merchantId);
+        return ttl.isZero() ? null : LocalDateTime.now().plus(ttl).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public Duration getMaxTtl() {
+        return maxTtl;
+    }
+
+    // app.orders.expiry.merchants.<id>.ttl, else app.orders.expiry.ttl; 0 = never.
+    private Duration merchantTtl(UUID merchantId) {
+        Duration ttl = merchantTtls.get(merchantId);
+        if (ttl == null) {
+            ttl = environment.getProperty(PREFIX + "merchants." + merchantId + ".ttl", Duration.class, defaultTtl);
+            merchantTtls.put(merchantId, ttl);
+        }
+        return ttl;
+    }
+
+    /* ================= SCHEDULING ================= */
+
+    /**
+     * Track a new order's deadline, once its transaction commits.
+     */
+    public void schedule(Order order) {
+        if (!enabled || order.getExpiresAt() == null) {
+            return;
+        }
+        Expiring expiring = new Expiring(order.getId(), order.getMerchantId(), order.getCreatedAt(),
+                order.getExpiresAt());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            inbox.offer(expiring);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                inbox.offer(expiring);
+            }
+        });
+    }
+
+    /**
+     * Whether this node expired the order lately; the cheap check before a
+     * payment reads it. {@code merchantId} keeps other merchants' IDs opaque.
+     */
+    public boolean isRecentlyExpired(String orderId, UUID merchantId) {
+        return orderId != null && merchantId.equals(recentlyExpired.getIfPresent(orderId));
+    }
+
+    /* ================= EXPIRY THREAD ================= */
+
+    private void run() {
+        try {
+            if (System.currentTimeMillis() >= nextRefill) {
+                refill();
+                nextRefill = System.currentTimeMillis() + refillInterval.toMillis();
+            }
+            Expiring expiring;
+            while ((expiring = inbox.poll()) != null) {
+                // Later deadlines are read by a refill, from the committed row.
+                if (expiring.expiresAt.isBefore(loadedAt)) {
+                    wheel.schedule(expiring, toMillis(expiring.expiresAt));
+                }
+            }
+            expireDue();
+        } catch (Exception e) {
+            log.error("Order expiry failed", e);
+        } finally {
+            scheduled = wheel.size();
+        }
+    }
+
+    /**
+     * Read deadlines up to now + horizon into the wheel, a page at a time,
+     * expiring what is already due after each page.
+     */
+    private void refill() {
+        LocalDateTime until = LocalDateTime.now().plus(horizon);
+        int loaded = 0;
+        while (true) {
+            List<Expiring> page = jdbcTemplate.query(LOAD_SQL,
+                    (rs, i) -> new Expiring(rs.getString(1), rs.getObject(2, UUID.class),
+                            rs.getTimestamp(3).toLocalDateTime(), rs.getTimestamp(4).toLocalDateTime()),
+                    Timestamp.valueOf(loadedAt), loadedId, Timestamp.valueOf(until), batchSize);
+            for (Expiring expiring : page) {
+                wheel.schedule(expiring, toMillis(expiring.expiresAt));
+            }
+            loaded += page.size();
+            if (page.size() < batchSize) {
+                break;
+            }
+            Expiring last = page.get(page.size() - 1);
+            loadedAt = last.expiresAt;
+            loadedId = last.id;
+            expireDue();
+        }
+        loadedAt = until;
+        loadedId = "";
+        loadedCounter.increment(loaded);
+        if (loaded > 0) {
+            log.debug("Loaded {} order deadlines up to {}", loaded, until);
+        }
+    }
+
+    private void expireDue() {
+        List<Expiring> due = new ArrayList<>();
+        wheel.advance(System.currentTimeMillis(), due::add);
+        for (int i = 0; i < due.size(); i += batchSize) {
+            flush(due.subList(i, Math.min(i + batchSize, due.size())));
+        }
+    }
+
+    private void flush(List<Expiring> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Expiring expiring : batch) {
+            args.add(new Object[] {now, expiring.id, Timestamp.valueOf(expiring.createdAt), now});
+        }
+        int[] updated;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            updated = jdbcTemplate.batchUpdate(EXPIRE_SQL, args);
+        } catch (DataAccessException e) {
+            log.warn("Failed to expire {} orders, retrying in {}: {}", batch.size(), retryDelay, e.getMessage());
+            long retryAt = System.currentTimeMillis() + retryDelay.toMillis();
+            batch.forEach(expiring -> wheel.schedule(expiring, retryAt));
+            return;
+        } finally {
+            sample.stop(flushTimer);
+        }
+        int expired = 0;
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                Expiring expiring = batch.get(i);
+                recentlyExpired.put(expiring.id, expiring.merchantId);
+                publicOrderCache.invalidate(expiring.id);
+                expired++;
+            }
+        }
+        expiredCounter.increment(expired);
+    }
+
+    // expires_at, like created_at, is the creating node's local time.
+    private static long toMillis(LocalDateTime at) {
+        return at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Expiring(String id, UUID merchantId, LocalDateTime createdAt, LocalDateTime expiresAt) {
+    }
+}
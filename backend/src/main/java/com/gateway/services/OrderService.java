@@ -1,40 +1,64 @@
 package com.gateway.services;
 
 import com.gateway.dto.CreateOrderRequest;
+import com.gateway.dto.ListQuery;
+import com.gateway.dto.PageResponse;
 import com.gateway.models.Order;
 import com.gateway.repositories.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Service
 public class OrderService {
 
-    private static final String ORDER_PREFIX = "order_";
-    private static final int ID_LENGTH = 16;
-    private static final String ALPHANUMERIC =
-            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-    private static final SecureRandom random = new SecureRandom();
-
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private OrderExpiryScheduler orderExpiry;
+
     public String generateOrderId() {
-        String id;
-        do {
-            StringBuilder sb = new StringBuilder(ORDER_PREFIX);
-            for (int i = 0; i < ID_LENGTH; i++) {
-                sb.append(ALPHANUMERIC.charAt(
-                        random.nextInt(ALPHANUMERIC.length())));
-            }
-            id = sb.toString();
-        } while (orderRepository.existsById(id));
-        return id;
+        return idGenerator.newOrderId();
     }
 
     public Order createOrder(CreateOrderRequest request, UUID merchantId) {
+        Order order = newOrder(request, merchantId);
+        long started = RequestStages.start();
+        Order saved;
+        try {
+            saved = orderRepository.save(order);
+        } finally {
+            RequestStages.end("save", started);
+        }
+        orderExpiry.schedule(saved);
+        return saved;
+    }
+
+    /**
+     * Insert all orders in one transaction. With hibernate.jdbc.batch_size
+     * and reWriteBatchedInserts this is a few multi-row INSERTs, not one
+     * statement per order.
+     */
+    @Transactional
+    public List<Order> createOrders(List<CreateOrderRequest> requests, UUID merchantId) {
+        List<Order> orders = new ArrayList<>(requests.size());
+        for (CreateOrderRequest request : requests) {
+            orders.add(newOrder(request, merchantId));
+        }
+        List<Order> saved = orderRepository.saveAll(orders);
+        saved.forEach(orderExpiry::schedule);
+        return saved;
+    }
+
+    private Order newOrder(CreateOrderRequest request, UUID merchantId) {
         Order order = new Order();
         order.setId(generateOrderId());
         order.setMerchantId(merchantId);
@@ -42,8 +66,9 @@ public class OrderService {
         order.setCurrency(request.getCurrency() != null ? request.getCurrency() : "INR");
         order.setReceipt(request.getReceipt());
         order.setNotes(request.getNotes());
-        order.setStatus("created");
-        return orderRepository.save(order);
+        order.setStatus(OrderStateMachine.CREATED);
+        order.setExpiresAt(orderExpiry.expiresAt(merchantId, request.getExpiresIn()));
+        return order;
     }
 
     public Order getOrder(String orderId) {
@@ -51,8 +76,21 @@ public class OrderService {
             throw new ApiException("BAD_REQUEST_ERROR", "order_id is required");
         }
 
-        return orderRepository.findById(orderId)
-                .orElseThrow(() ->
-                        new ApiException("NOT_FOUND_ERROR", "Order not found"));
+        long started = RequestStages.start();
+        try {
+            return PartitionLookup.findById(orderId,
+                            orderRepository::findByIdAndCreatedAtBetween, orderRepository::findById)
+                    .orElseThrow(() ->
+                            new ApiException("NOT_FOUND_ERROR", "Order not found"));
+        } finally {
+            RequestStages.end("order_lookup", started);
+        }
+    }
+
+    public PageResponse<Order> listOrders(UUID merchantId, ListQuery query) {
+        int limit = PageCursor.limit(query);
+        List<Order> rows = orderRepository.findPage(
+                merchantId, PageCursor.filter(query, null), limit + 1);
+        return PageCursor.page(rows, limit, Order::getCreatedAt, Order::getId);
     }
 }
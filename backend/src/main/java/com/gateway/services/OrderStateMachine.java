@@ -0,0 +1,202 @@
+package com.gateway.services;
+
+import com.gateway.dto.PaymentStatus;
+import com.gateway.models.Order;
+import com.gateway.models.Payment;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order status transitions, as compare-and-set updates rather than row locks:
+ *
+ * <pre>
+ *   created, attempted --claim--&gt; processing --settle(success)--&gt; paid
+ *                                 processing --settle(failed)---&gt; attempted
+ *   created, attempted --expire (OrderExpiryScheduler)--&gt; expired
+ * </pre>
+ *
+ * A payment is only inserted in the same transaction as a successful claim
+ * on its order, so at most one payment per order is in flight and at most
+ * one succeeds. Every transition bumps orders.version and a claim names the
+ * version it read, so two requests acting on the same snapshot cannot both
+ * win; the loser re-reads the order (see PaymentService). An order past its
+ * expires_at cannot be claimed, and a failed payment settling it after that
+ * expires it rather than making it payable again.
+ */
+@Service
+public class OrderStateMachine {
+
+    public static final String CREATED = "created";
+    public static final String PROCESSING = "processing";
+    public static final String ATTEMPTED = "attempted";
+    public static final String PAID = "paid";
+    public static final String EXPIRED = "expired";
+
+    private static final String CLAIM_SQL =
+            "UPDATE orders SET status = 'processing', version = version + 1, updated_at = ? " +
+            "WHERE id = ? AND created_at = ? AND version = ? AND status IN ('created', 'attempted') " +
+            "AND (expires_at IS NULL OR expires_at > ?)";
+
+    // Parameters: status, time, status, time; "attempted" past expires_at becomes "expired".
+    private static final String SETTLE_STATUS =
+            "UPDATE orders SET status = CASE WHEN ? = 'attempted' AND expires_at <= ? THEN 'expired' " +
+            "ELSE ? END, version = version + 1, updated_at = ? ";
+
+    private static final String SETTLE_SQL =
+            SETTLE_STATUS + "WHERE id = ? AND created_at BETWEEN ? AND ? AND status = 'processing'";
+
+    private static final String SETTLE_UNPRUNED_SQL =
+            SETTLE_STATUS + "WHERE id = ? AND status = 'processing'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PublicOrderCache publicOrderCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /* ================= CLAIM ================= */
+
+    /**
+     * Fail fast, before any write, if the order as read cannot take a payment.
+     */
+    public void checkPayable(Order order) {
+        if (!isPayable(order)) {
+            throw conflict(order);
+        }
+    }
+
+    public static boolean isPayable(Order order) {
+        String status = order.getStatus();
+        return (CREATED.equals(status) || ATTEMPTED.equals(status)) && !isPastExpiry(order);
+    }
+
+    private static boolean isPastExpiry(Order order) {
+        return order.getExpiresAt() != null && !order.getExpiresAt().isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * The error for a payment attempt on {@code order} as read.
+     */
+    public ApiException conflict(Order order) {
+        boolean payable = CREATED.equals(order.getStatus()) || ATTEMPTED.equals(order.getStatus());
+        return conflict(payable && isPastExpiry(order) ? EXPIRED : order.getStatus());
+    }
+
+    /**
+     * The error for a payment attempt on an order in {@code status}.
+     */
+    public ApiException conflict(String status) {
+        ApiException error;
+        if (PAID.equals(status)) {
+            error = new ApiException("ORDER_ALREADY_PAID", "Order has already been paid", HttpStatus.CONFLICT);
+        } else if (EXPIRED.equals(status)) {
+            error = new ApiException("ORDER_EXPIRED", "Order has expired", HttpStatus.CONFLICT);
+        } else if (PROCESSING.equals(status)) {
+            error = new ApiException("PAYMENT_IN_PROGRESS",
+                    "Another payment for this order is in progress", HttpStatus.CONFLICT);
+        } else {
+            error = new ApiException("ORDER_CONFLICT",
+                    "Order was updated concurrently, retry the payment", HttpStatus.CONFLICT);
+        }
+        meterRegistry.counter("gateway.orders.claim.rejected", "code", error.getCode()).increment();
+        return error;
+    }
+
+    /**
+     * Move the order from created/attempted to processing if it is still at
+     * the version read. Must run in the transaction that inserts the payment.
+     */
+    public boolean claim(Order order) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int updated = jdbcTemplate.update(CLAIM_SQL, now,
+                order.getId(), Timestamp.valueOf(order.getCreatedAt()), order.getVersion(), now);
+        if (updated == 0) {
+            return false;
+        }
+        publicOrderCache.invalidateAfterCommit(order.getId());
+        return true;
+    }
+
+    /**
+     * {@link #claim} for several orders with one JDBC batch. Within the batch
+     * a second claim on the same order misses, as it would on its own.
+     */
+    public boolean[] claimAll(List<Order> orders) {
+        boolean[] claimed = new boolean[orders.size()];
+        if (orders.isEmpty()) {
+            return claimed;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            args.add(new Object[] {now, order.getId(), Timestamp.valueOf(order.getCreatedAt()), order.getVersion(), now});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(CLAIM_SQL, args);
+        for (int i = 0; i < updated.length; i++) {
+            claimed[i] = updated[i] != 0;
+            if (claimed[i]) {
+                publicOrderCache.invalidateAfterCommit(orders.get(i).getId());
+            }
+        }
+        return claimed;
+    }
+
+    /* ================= SETTLE ================= */
+
+    /**
+     * Release the order held by a payment that just reached its final status:
+     * paid on success, attempted (payable again) on failure, or expired on
+     * failure past its expires_at. Must run in the transaction that
+     * completes the payment.
+     */
+    public void settle(Payment payment, PaymentStatus status) {
+        settleAll(List.of(payment), List.of(status));
+    }
+
+    public void settleAll(List<Payment> payments, List<PaymentStatus> statuses) {
+        if (payments.isEmpty()) {
+            return;
+        }
+        List<Object[]> pruned = new ArrayList<>();
+        List<Object[]> unpruned = new ArrayList<>();
+        for (int i = 0; i < payments.size(); i++) {
+            String orderId = payments.get(i).getOrderId();
+            PaymentStatus status = statuses.get(i);
+            String next = "success".equals(status.getStatus()) ? PAID : ATTEMPTED;
+            Timestamp at = Timestamp.valueOf(status.getUpdatedAt());
+            PartitionLookup.Window window = PartitionLookup.window(orderId);
+            if (window == null) {
+                unpruned.add(new Object[] {next, at, next, at, orderId});
+            } else {
+                pruned.add(new Object[] {next, at, next, at, orderId,
+                        Timestamp.valueOf(window.from()), Timestamp.valueOf(window.to())});
+            }
+            publicOrderCache.invalidateAfterCommit(orderId);
+        }
+        if (!pruned.isEmpty()) {
+            int[] updated = jdbcTemplate.batchUpdate(SETTLE_SQL, pruned);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    // Created outside the window, on a node with a skewed clock.
+                    Object[] row = pruned.get(i);
+                    unpruned.add(new Object[] {row[0], row[1], row[2], row[3], row[4]});
+                }
+            }
+        }
+        if (!unpruned.isEmpty()) {
+            jdbcTemplate.batchUpdate(SETTLE_UNPRUNED_SQL, unpruned);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.gateway.services;
+
+import com.gateway.dto.ListQuery;
+import com.gateway.dto.PageResponse;
+import com.gateway.repositories.ListFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position in a newest-first listing: the (created_at, id) of the last row
+ * returned. Sent to clients as an opaque base64url token.
+ */
+record PageCursor(LocalDateTime createdAt, String id) {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    String encode() {
+        String raw = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int comma = raw.indexOf(',');
+            if (comma > 0 && comma < raw.length() - 1) {
+                return new PageCursor(LocalDateTime.parse(raw.substring(0, comma)), raw.substring(comma + 1));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // fall through
+        }
+        throw new ApiException("BAD_REQUEST_ERROR", "Invalid cursor");
+    }
+
+    /* ================= QUERY PARSING ================= */
+
+    static int limit(ListQuery query) {
+        Integer limit = query.getLimit();
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ApiException("BAD_REQUEST_ERROR", "limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    static ListFilter filter(ListQuery query, String method) {
+        PageCursor after = isBlank(query.getCursor()) ? null : decode(query.getCursor());
+        return new ListFilter(
+                blankToNull(query.getStatus()),
+                blankToNull(method),
+                timestamp(query.getFrom(), "from"),
+                timestamp(query.getTo(), "to"),
+                after != null ? after.createdAt() : null,
+                after != null ? after.id() : null);
+    }
+
+    /**
+     * Turn up to {@code limit + 1} rows into a page; the extra row only
+     * tells whether there is a next page.
+     */
+    static <T> PageResponse<T> page(List<T> rows, int limit,
+                                    Function<T, LocalDateTime> createdAt, Function<T, String> id) {
+        if (rows.size() <= limit) {
+            return new PageResponse<>(rows, false, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, limit));
+        T last = items.get(limit - 1);
+        return new PageResponse<>(items, true, new PageCursor(createdAt.apply(last), id.apply(last)).encode());
+    }
+
+    private static LocalDateTime timestamp(String value, String param) {
+        if (isBlank(value)) {
+            return null;
+        }
+        try {
+            return value.length() == 10
+                    ? LocalDate.parse(value).atStartOfDay()
+                    : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException("BAD_REQUEST_ERROR",
+                    param + " must be an ISO date (2024-01-31) or date-time (2024-01-31T10:15:30)");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return isBlank(value) ? null : value;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
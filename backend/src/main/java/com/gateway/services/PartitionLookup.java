@@ -0,0 +1,86 @@
+package com.gateway.services;
+
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Primary-key lookups on the created_at-partitioned orders and payments.
+ *
+ * A plain {@code WHERE id = ?} cannot be pruned and probes the primary key of
+ * every partition. IDs carry their creation time (see
+ * {@link IdGenerator#timestampOf}), so the lookup adds a created_at window
+ * around it and touches one partition, two at a boundary. IDs without a
+ * time prefix, and rows outside the window (a node with a skewed clock or
+ * time zone), are found by the unpruned lookup instead.
+ *
+ * Inside a {@link ReadRouting} replica scope, rows created within its
+ * primary window, rows the replica does not have (yet) and reads the
+ * replica fails are read from the primary, so a client reading what it
+ * just wrote finds it.
+ */
+final class PartitionLookup {
+
+    // created_at is set a few milliseconds after the ID; the rest is clock skew.
+    private static final Duration SLACK = Duration.ofMinutes(10);
+
+    @FunctionalInterface
+    interface WindowedFinder<T> {
+        Optional<T> find(String id, LocalDateTime from, LocalDateTime to);
+    }
+
+    private PartitionLookup() {
+    }
+
+    static <T> Optional<T> findById(String id, WindowedFinder<T> windowed, Function<String, Optional<T>> unpruned) {
+        if (!ReadRouting.isReplicaAllowed()) {
+            return find(id, windowed, unpruned);
+        }
+        Instant created = IdGenerator.timestampOf(id);
+        if (created != null && ReadRouting.isRecent(created)) {
+            return ReadRouting.primary(() -> find(id, windowed, unpruned));
+        }
+        Optional<T> found;
+        try {
+            found = find(id, windowed, unpruned);
+        } catch (DataAccessException e) {
+            // The replica went away under a pooled connection; the pool drops it.
+            found = Optional.empty();
+        }
+        return found.isPresent() ? found : ReadRouting.primary(() -> find(id, windowed, unpruned));
+    }
+
+    private static <T> Optional<T> find(String id, WindowedFinder<T> windowed, Function<String, Optional<T>> unpruned) {
+        Window window = window(id);
+        if (window != null) {
+            Optional<T> found = windowed.find(id, window.from(), window.to());
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return unpruned.apply(id);
+    }
+
+    /**
+     * The created_at range a row with this ID is expected in, or null for
+     * IDs without a time prefix. Updates use it the same way: a miss is
+     * repeated without the window.
+     */
+    static Window window(String id) {
+        Instant created = IdGenerator.timestampOf(id);
+        if (created == null) {
+            return null;
+        }
+        // created_at is the creating node's local time, see the entities' @PrePersist.
+        LocalDateTime at = LocalDateTime.ofInstant(created, ZoneId.systemDefault());
+        return new Window(at.minus(SLACK), at.plus(SLACK));
+    }
+
+    record Window(LocalDateTime from, LocalDateTime to) {
+    }
+}
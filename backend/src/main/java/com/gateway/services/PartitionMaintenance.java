@@ -0,0 +1,346 @@
+package com.gateway.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the created_at range partitions of orders and payments in shape.
+ *
+ * On startup and then every {@code app.partitioning.check-interval-ms}:
+ * <ul>
+ *   <li>creates the partition for the current interval and {@code premake}
+ *       intervals ahead, plus a DEFAULT partition so an insert never fails
+ *       for lack of one (rows there mean maintenance fell behind, see the
+ *       {@code gateway.partitions.default.rows} gauge);</li>
+ *   <li>moves partitions older than {@code cold-after} intervals, with their
+ *       indexes, to {@code cold-tablespace} when one is configured;</li>
+ *   <li>detaches partitions older than {@code retention} intervals and moves
+ *       them to {@code archive-schema}, where they can be dumped or dropped
+ *       without touching the live tables.</li>
+ * </ul>
+ * DDL runs under {@code lock_timeout} so a long query holding a partition
+ * delays the step to the next run instead of queueing every request behind
+ * it. With several replicas, an advisory lock lets one of them do the work.
+ */
+@Service
+public class PartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+
+    static final List<String> TABLES = List.of("orders", "payments");
+
+    private static final long LOCK_KEY = 0x7061727469746e31L;
+    private static final int DEFAULT_ROWS_CAP = 10_000;
+    private static final Pattern RANGE = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+
+    public enum Interval {
+        DAY, WEEK, MONTH;
+
+        private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+        LocalDate floor(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(DayOfWeek.MONDAY);
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate plus(LocalDate start, long intervals) {
+            return switch (this) {
+                case DAY -> start.plusDays(intervals);
+                case WEEK -> start.plusWeeks(intervals);
+                case MONTH -> start.plusMonths(intervals);
+            };
+        }
+
+        String suffix(LocalDate start) {
+            return this == MONTH ? MONTH_SUFFIX.format(start) : DateTimeFormatter.BASIC_ISO_DATE.format(start);
+        }
+
+        static Interval parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("app.partitioning.interval must be day, week or month");
+            }
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.partitioning.interval:month}")
+    private String intervalName;
+
+    @Value("${app.partitioning.premake:3}")
+    private int premake;
+
+    @Value("${app.partitioning.retention:0}")
+    private int retention;
+
+    @Value("${app.partitioning.archive-schema:archive}")
+    private String archiveSchema;
+
+    @Value("${app.partitioning.cold-after:0}")
+    private int coldAfter;
+
+    @Value("${app.partitioning.cold-tablespace:}")
+    private String coldTablespace;
+
+    @Value("${app.partitioning.lock-timeout:5s}")
+    private Duration lockTimeout;
+
+    private Interval interval;
+    private final Map<String, AtomicLong> defaultRows = new ConcurrentHashMap<>();
+    private final Set<String> unpartitionedWarned = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        interval = Interval.parse(intervalName);
+        for (String table : TABLES) {
+            AtomicLong rows = new AtomicLong();
+            defaultRows.put(table, rows);
+            meterRegistry.gauge("gateway.partitions.default.rows", Tags.of("table", table), rows);
+        }
+        // Before the first request: the current partition has to exist.
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${app.partitioning.check-interval-ms:3600000}",
+               initialDelayString = "${app.partitioning.check-interval-ms:3600000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) this::maintain);
+        } catch (DataAccessException e) {
+            log.warn("Partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    private Void maintain(Connection connection) throws SQLException {
+        if (!queryBoolean(connection, "SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+            log.debug("Partition maintenance is running on another node");
+            return null;
+        }
+        try {
+            execute(connection, "SET lock_timeout = " + lockTimeout.toMillis());
+            for (String table : TABLES) {
+                maintain(connection, table);
+            }
+        } finally {
+            execute(connection, "RESET lock_timeout");
+            queryBoolean(connection, "SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+        }
+        return null;
+    }
+
+    private void maintain(Connection connection, String table) throws SQLException {
+        if (!isPartitioned(connection, table)) {
+            if (unpartitionedWarned.add(table)) {
+                log.warn("Table {} is not partitioned, skipping partition maintenance " +
+                         "(see backend/db/migrate-to-partitions.sql)", table);
+            }
+            return;
+        }
+
+        if (queryBoolean(connection, "SELECT to_regclass('" + table + "_default') IS NULL")) {
+            step(connection, table, "created", "CREATE TABLE " + table + "_default PARTITION OF " + table + " DEFAULT");
+        }
+
+        List<Partition> partitions = partitions(connection, table);
+        LocalDate current = interval.floor(LocalDate.now());
+        for (int i = 0; i <= premake; i++) {
+            LocalDateTime from = interval.plus(current, i).atStartOfDay();
+            LocalDateTime to = interval.plus(current, i + 1).atStartOfDay();
+            if (partitions.stream().noneMatch(p -> p.overlaps(from, to))) {
+                String name = table + "_p" + interval.suffix(from.toLocalDate());
+                if (step(connection, table, "created", "CREATE TABLE " + name + " PARTITION OF " + table +
+                        " FOR VALUES FROM ('" + from + "') TO ('" + to + "')")) {
+                    log.info("Created partition {} for [{}, {})", name, from, to);
+                }
+            }
+        }
+
+        LocalDateTime archiveBefore = retention > 0 ? interval.plus(current, -retention).atStartOfDay() : null;
+        LocalDateTime coldBefore = coldAfter > 0 && !coldTablespace.isBlank()
+                ? interval.plus(current, -coldAfter).atStartOfDay() : null;
+        for (Partition partition : partitions) {
+            if (partition.to == null) {
+                continue;
+            }
+            if (archiveBefore != null && !partition.to.isAfter(archiveBefore)) {
+                archive(connection, table, partition);
+            } else if (coldBefore != null && !partition.to.isAfter(coldBefore)
+                    && !coldTablespace.equals(partition.tablespace)) {
+                moveToCold(connection, table, partition);
+            }
+        }
+
+        defaultRows.get(table).set(queryLong(connection,
+                "SELECT count(*) FROM (SELECT 1 FROM " + table + "_default LIMIT " + DEFAULT_ROWS_CAP + ") d"));
+    }
+
+    private void archive(Connection connection, String table, Partition partition) throws SQLException {
+        String name = quote(partition.name);
+        if (step(connection, table, "detached", "ALTER TABLE " + table + " DETACH PARTITION " + name)) {
+            execute(connection, "CREATE SCHEMA IF NOT EXISTS " + quote(archiveSchema));
+            step(connection, table, "archived", "ALTER TABLE " + name + " SET SCHEMA " + quote(archiveSchema));
+            log.info("Detached partition {} ([{}, {})) into schema {}",
+                    partition.name, partition.from, partition.to, archiveSchema);
+        }
+    }
+
+    private void moveToCold(Connection connection, String table, Partition partition) throws SQLException {
+        String tablespace = quote(coldTablespace);
+        if (!step(connection, table, "cold", "ALTER TABLE " + quote(partition.name) + " SET TABLESPACE " + tablespace)) {
+            return;
+        }
+        for (String index : indexes(connection, partition.name)) {
+            step(connection, table, "cold", "ALTER INDEX " + index + " SET TABLESPACE " + tablespace);
+        }
+        log.info("Moved partition {} to tablespace {}", partition.name, coldTablespace);
+    }
+
+    /** Run one DDL step; a failure is logged and counted, and the run goes on. */
+    private boolean step(Connection connection, String table, String action, String sql) {
+        try {
+            execute(connection, sql);
+            meterRegistry.counter("gateway.partitions.maintenance",
+                    "table", table, "action", action, "outcome", "ok").increment();
+            return true;
+        } catch (SQLException e) {
+            meterRegistry.counter("gateway.partitions.maintenance",
+                    "table", table, "action", action, "outcome", "failed").increment();
+            log.warn("Partition maintenance step failed ({}): {}", sql, e.getMessage());
+            return false;
+        }
+    }
+
+    /* ================= CATALOG ================= */
+
+    private record Partition(String name, LocalDateTime from, LocalDateTime to, String tablespace) {
+
+        // from == null: MINVALUE; to == null: the DEFAULT partition.
+        boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            return to != null && (from == null || from.isBefore(end)) && to.isAfter(start);
+        }
+    }
+
+    private static boolean isPartitioned(Connection connection, String table) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT relkind FROM pg_class WHERE oid = to_regclass(?)")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && "p".equals(rs.getString(1));
+            }
+        }
+    }
+
+    private static List<Partition> partitions(Connection connection, String table) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), t.spcname " +
+                "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "LEFT JOIN pg_tablespace t ON t.oid = c.reltablespace " +
+                "WHERE i.inhparent = to_regclass(?)")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Matcher range = RANGE.matcher(rs.getString(2));
+                    if (range.find()) {
+                        partitions.add(new Partition(rs.getString(1), bound(range.group(1)),
+                                upperBound(range.group(2)), rs.getString(3)));
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private static LocalDateTime bound(String literal) {
+        if (literal.equalsIgnoreCase("MINVALUE")) {
+            return null;
+        }
+        return Timestamp.valueOf(literal.replace("'", "")).toLocalDateTime();
+    }
+
+    private static LocalDateTime upperBound(String literal) {
+        return literal.equalsIgnoreCase("MAXVALUE") ? LocalDateTime.MAX : bound(literal);
+    }
+
+    private static List<String> indexes(Connection connection, String partition) throws SQLException {
+        List<String> indexes = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT CAST(indexrelid AS regclass) FROM pg_index WHERE indrelid = to_regclass(?)")) {
+            ps.setString(1, quote(partition));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    indexes.add(rs.getString(1));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static boolean queryBoolean(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,42 @@
+package com.gateway.services;
+
+import com.gateway.dto.PaymentStatus;
+import com.gateway.models.Payment;
+import com.gateway.repositories.PaymentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Moves a payment out of "processing", releases its order (see
+ * {@link OrderStateMachine#settle}) and records its webhook event, all in
+ * one transaction (transactional outbox).
+ */
+@Service
+public class PaymentCompletionService {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderStateMachine orderStates;
+
+    @Autowired
+    private WebhookService webhookService;
+
+    /**
+     * @return false when the payment had already left "processing"
+     */
+    @Transactional
+    public boolean complete(Payment payment, PaymentStatus status) {
+        int updated = paymentRepository.completeProcessing(payment.getId(), payment.getCreatedAt(),
+                payment.getVersion(), status.getStatus(), status.getErrorCode(), status.getErrorDescription(),
+                status.getUpdatedAt());
+        if (updated == 0) {
+            return false;
+        }
+        orderStates.settle(payment, status);
+        webhookService.recordPaymentEvent(payment, status);
+        return true;
+    }
+}
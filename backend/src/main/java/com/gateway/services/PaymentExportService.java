@@ -0,0 +1,445 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.dto.ListQuery;
+import com.gateway.repositories.ListFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a merchant's payments as CSV or NDJSON, oldest first.
+ *
+ * Rows come from a forward-only server-side cursor (autocommit off plus a
+ * fetch size, which is what makes the Postgres driver fetch in chunks) and
+ * are written column by column straight to the response, so heap use does
+ * not depend on the number of rows. Each export holds one pooled connection
+ * for its whole duration, hence the {@code app.export.max-concurrent} cap.
+ */
+@Service
+public class PaymentExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentExportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] COLUMNS = {
+            "id", "order_id", "amount", "currency", "method", "status", "vpa",
+            "card_network", "card_last4", "error_code", "created_at", "updated_at"
+    };
+    private static final int AMOUNT_COLUMN = 3;
+
+    public enum Format {
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv"),
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) {
+                return CSV;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException("BAD_REQUEST_ERROR", "format must be csv or ndjson");
+            }
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore slots;
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(maxConcurrent);
+        meterRegistry.gauge("gateway.export.active", slots, s -> maxConcurrent - s.availablePermits());
+    }
+
+    /**
+     * Validate the request and reserve an export slot; the returned body
+     * runs the query when Spring MVC starts writing the response. The slot
+     * is released when the body ends, or with the async request if the body
+     * never runs (client gone, executor rejected it).
+     */
+    public StreamingResponseBody export(UUID merchantId, ListQuery query, Format format, boolean gzip) {
+        ListFilter filter = PageCursor.filter(query, query.getMethod());
+        if (!slots.tryAcquire()) {
+            throw new ApiException("EXPORT_CAPACITY_EXCEEDED",
+                    "Too many exports running, retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        Slot slot = new Slot();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet) {
+            WebAsyncUtils.getAsyncManager(servlet.getRequest()).registerCallableInterceptor(Slot.class.getName(),
+                    new CallableProcessingInterceptor() {
+                        @Override
+                        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                            slot.release();
+                        }
+                    });
+        }
+        return out -> {
+            try {
+                stream(merchantId, filter, format, gzip, out);
+            } finally {
+                slot.release();
+            }
+        };
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows gzip: listed, or covered by
+     * "*", with a q-value above 0.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parts) > 0;
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return accepted;
+            }
+            if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    // The q parameter of a coding, 1 when absent; 0 when malformed, as for an unknown coding.
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String[] param = parts[i].split("=", 2);
+            if (param.length == 2 && param[0].trim().equalsIgnoreCase("q")) {
+                try {
+                    return Double.parseDouble(param[1].trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private void stream(UUID merchantId, ListFilter filter, Format format, boolean gzip, OutputStream out)
+            throws IOException {
+
+        String tag = format.extension();
+        Counter rowsCounter = meterRegistry.counter("gateway.export.rows", "format", tag);
+        Counter bytesCounter = meterRegistry.counter("gateway.export.bytes", "format", tag);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long started = System.nanoTime();
+
+        MeteredOutputStream metered = new MeteredOutputStream(out);
+        GzipBody gzipped = gzip ? new GzipBody(metered) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzipped != null ? gzipped : metered,
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(merchantId, filter, params);
+
+        long count = 0;
+        long reportedBytes = 0;
+        String outcome = "aborted";
+        // A long scan of settled rows: a replica may serve it (see ReadRouting).
+        ReadRouting routing = ReadRouting.replica(Duration.ZERO);
+        try (Connection connection = dataSource.getConnection()) {
+            RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                rows.header();
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        rows.row(rs);
+                        if (++count % fetchSize == 0) {
+                            rowsCounter.increment(fetchSize);
+                            reportedBytes = report(bytesCounter, metered, reportedBytes);
+                        }
+                    }
+                }
+                connection.commit();
+            }
+            rows.finish();
+            writer.close();
+            outcome = "completed";
+        } catch (SQLException e) {
+            throw new IOException("Payment export failed", e);
+        } finally {
+            // Not closed on failure: that would end a truncated export like a complete one.
+            if (gzipped != null) {
+                gzipped.release();
+            }
+            routing.close();
+            rowsCounter.increment(count % fetchSize);
+            report(bytesCounter, metered, reportedBytes);
+            sample.stop(meterRegistry.timer("gateway.export.duration", "format", tag, "outcome", outcome));
+
+            double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-3);
+            log.info("Payment export for merchant {} {}: {} rows, {} bytes in {} ms ({} rows/s)",
+                    merchantId, outcome, count, metered.count, Math.round(seconds * 1000),
+                    Math.round(count / seconds));
+        }
+    }
+
+    private static long report(Counter bytesCounter, MeteredOutputStream metered, long reported) {
+        bytesCounter.increment(metered.count - reported);
+        return metered.count;
+    }
+
+    private static String buildQuery(UUID merchantId, ListFilter filter, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", COLUMNS))
+                .append(" FROM payments WHERE merchant_id = ?");
+        params.add(merchantId);
+        if (filter.status() != null) {
+            sql.append(" AND status = ?");
+            params.add(filter.status());
+        }
+        if (filter.method() != null) {
+            sql.append(" AND method = ?");
+            params.add(filter.method());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(filter.to()));
+        }
+        // Same order as the (merchant_id[, status|method], created_at, id) indexes: no sort.
+        return sql.append(" ORDER BY created_at, id").toString();
+    }
+
+    /* ================= ROW WRITERS ================= */
+
+    private interface RowWriter {
+        void header() throws IOException;
+
+        void row(ResultSet rs) throws IOException, SQLException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer out;
+
+        CsvRowWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void header() throws IOException {
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+        }
+
+        @Override
+        public void row(ResultSet rs) throws IOException, SQLException {
+            for (int i = 1; i <= COLUMNS.length; i++) {
+                if (i > 1) {
+                    out.write(',');
+                }
+                String value = rs.getString(i);
+                if (value != null) {
+                    writeField(value);
+                }
+            }
+            out.write('\n');
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0, len = value.length(); i < len && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            for (int i = 0, len = value.length(); i < len; i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.write('"');
+                }
+                out.write(c);
+            }
+            out.write('"');
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator json;
+        private boolean empty = true;
+
+        NdjsonRowWriter(Writer out) throws IOException {
+            this.json = objectMapper.getFactory().createGenerator(out);
+            this.json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        public void header() {
+        }
+
+        @Override
+        public void row(ResultSet rs) throws IOException, SQLException {
+            empty = false;
+            json.writeStartObject();
+            for (int i = 1; i <= COLUMNS.length; i++) {
+                json.writeFieldName(COLUMNS[i - 1]);
+                if (i == AMOUNT_COLUMN) {
+                    json.writeNumber(rs.getInt(i));
+                } else {
+                    String value = rs.getString(i);
+                    if (value == null) {
+                        json.writeNull();
+                    } else {
+                        json.writeString(value);
+                    }
+                }
+            }
+            json.writeEndObject();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!empty) {
+                json.writeRaw('\n');
+            }
+            json.flush();
+        }
+    }
+
+    /** Gzip whose deflater (native memory) can be freed without writing the trailer. */
+    private static final class GzipBody extends GZIPOutputStream {
+
+        GzipBody(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+
+    /** An export slot, released once however the export ends. */
+    private final class Slot {
+
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        void release() {
+            if (held.compareAndSet(true, false)) {
+                slots.release();
+            }
+        }
+    }
+
+    /** Counts bytes as they leave for the client, after compression. */
+    private static final class MeteredOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        MeteredOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.gateway.services;
+
+import com.gateway.dto.PaymentStatus;
+import com.gateway.models.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives persisted payments from "processing" to "success"/"failed" through
+ * the {@link Acquirer}.
+ *
+ * Every rail (upi, card.visa, card.mastercard, ...; see {@link Rails}) is a
+ * bulkhead: its own limit on calls in flight at the acquirer
+ * ({@code max-concurrent}), its own queue ({@code queue-capacity}), timeout
+ * and {@link CircuitBreaker}. A slow or failing rail fills and trips only
+ * its own bulkhead; payments on the others keep flowing. While a breaker is
+ * open, new payments on its rail are refused with ACQUIRER_UNAVAILABLE and
+ * queued ones fail with that error_code instead of waiting on it.
+ *
+ * Within a rail, payments wait in a {@link FairQueue} per merchant, served
+ * by deficit round robin: a merchant's weight is how many of its payments
+ * go per round, and its queue holds at most {@code max-queued}. Both come
+ * from the merchant's tier ({@code app.payment.processing.fair.*}), so a
+ * flash sale queues behind its own backlog, not in front of everyone's.
+ * Drains are serialized per rail without a lock: whoever finds the rail
+ * idle drains it, and threads arriving meanwhile leave their work to it.
+ *
+ * Acquirer calls are asynchronous, so thousands in flight cost a future
+ * each. Only the final status update runs on the small worker pool, shared
+ * by all rails as it only waits on the database.
+ *
+ * Jobs live only in memory: payments of a node that dies stay "processing"
+ * until PaymentRecoverySweeper re-drives them, and a node shutting down
+ * finishes what it can first (see {@link #stopGracefully}). A payment is
+ * inserted with a lease held by this node ({@code app.payment.recovery.lease}),
+ * which the sweeper renews while it is unfinished here, so no other node
+ * takes it over however long it queues.
+ */
+@Service
+public class PaymentProcessingEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentProcessingEngine.class);
+
+    private static final String PREFIX = "app.acquirer.";
+    private static final String FAIR_PREFIX = "app.payment.processing.fair.";
+
+    @Autowired
+    private PaymentWriter paymentWriter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PaymentStatusNotifier statusNotifier;
+
+    @Autowired
+    private Acquirer acquirer;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    // Node-wide bound on admitted payments (in flight plus queued, all rails).
+    @Value("${app.payment.processing.max-in-flight:5000}")
+    private int maxInFlight;
+
+    @Value("${app.payment.processing.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${app.payment.processing.worker-threads:8}")
+    private int workerThreads;
+
+    @Value("${app.payment.processing.fair.tier:standard}")
+    private String defaultTier;
+
+    @Value("${app.payment.processing.fair.weight:1}")
+    private int defaultWeight;
+
+    @Value("${app.payment.processing.fair.max-queued:1000}")
+    private int defaultMaxQueued;
+
+    @Value("${app.payment.recovery.lease:2m}")
+    private Duration lease;
+
+    @Value("${app.acquirer.max-concurrent:2000}")
+    private int railMaxConcurrent;
+
+    @Value("${app.acquirer.queue-capacity:5000}")
+    private int railQueueCapacity;
+
+    @Value("${app.acquirer.timeout:30s}")
+    private Duration railTimeout;
+
+    @Value("${app.acquirer.breaker.window:100}")
+    private int breakerWindow;
+
+    @Value("${app.acquirer.breaker.minimum-calls:20}")
+    private int breakerMinimumCalls;
+
+    @Value("${app.acquirer.breaker.failure-rate:0.5}")
+    private double breakerFailureRate;
+
+    @Value("${app.acquirer.breaker.open-duration:30s}")
+    private Duration breakerOpenDuration;
+
+    @Value("${app.acquirer.breaker.half-open-calls:5}")
+    private int breakerHalfOpenCalls;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final Map<UUID, MerchantSettings> merchantSettings = new ConcurrentHashMap<>();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    // Submitted and not finished, by payment ID.
+    private final Map<String, Payment> unfinished = new ConcurrentHashMap<>();
+    private volatile boolean draining;
+    private String leaseOwner;
+
+    private ThreadPoolExecutor workers;
+
+    private Counter submittedCounter;
+    private Counter rejectedCounter;
+    private Counter successCounter;
+    private Counter failedCounter;
+    private Timer latencyTimer;
+
+    @PostConstruct
+    void start() {
+        leaseOwner = "node-" + idGenerator.getNodeId();
+        // Bounded by admission: a job only reaches the workers once its rail answered.
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight + queueCapacity),
+                new CustomizableThreadFactory("payment-worker-"));
+
+        submittedCounter = meterRegistry.counter("gateway.processing.submitted");
+        rejectedCounter = meterRegistry.counter("gateway.processing.rejected");
+        successCounter = meterRegistry.counter("gateway.processing.completed", "outcome", "success");
+        failedCounter = meterRegistry.counter("gateway.processing.completed", "outcome", "failed");
+        latencyTimer = Timer.builder("gateway.processing.latency")
+                .description("Time from admission to final payment status")
+                .register(meterRegistry);
+        Gauge.builder("gateway.processing.queue.depth", queued, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("gateway.processing.in-flight", this, PaymentProcessingEngine::getInFlight)
+                .register(meterRegistry);
+
+        // Up front, so every rail reports from the start.
+        Rails.ALL.forEach(rail -> bulkheads.computeIfAbsent(rail, this::newBulkhead));
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdown();
+    }
+
+    /* ================= ADMISSION ================= */
+
+    /**
+     * Reserve capacity for one payment before it is persisted. Throws when
+     * its rail's breaker is open, its bulkhead or the node is full (503), or
+     * its merchant's queue on the rail is full (429).
+     */
+    public void admit(Payment payment) {
+        Bulkhead bulkhead = bulkhead(payment);
+        if (!draining && bulkhead.breaker.isOpen()) {
+            bulkhead.rejectedOpen.increment();
+            throw new ApiException("ACQUIRER_UNAVAILABLE",
+                    "Payments on " + bulkhead.rail + " are temporarily unavailable, retry later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        Admission admission = tryAdmit(bulkhead, payment.getMerchantId());
+        if (admission == Admission.MERCHANT_FULL) {
+            throw new ApiException("PROCESSING_CAPACITY_EXCEEDED",
+                    "Too many of this merchant's payments are waiting for processing, retry later",
+                    HttpStatus.TOO_MANY_REQUESTS);
+        }
+        if (admission != Admission.ADMITTED) {
+            rejectedCounter.increment();
+            throw new ApiException("PROCESSING_CAPACITY_EXCEEDED",
+                    draining ? "This node is shutting down, retry later"
+                            : "Payment processing is at capacity, retry later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        payment.setLeaseOwner(leaseOwner);
+        payment.setLeaseUntil(LocalDateTime.now().plus(lease));
+    }
+
+    private Admission tryAdmit(Bulkhead bulkhead, UUID merchantId) {
+        if (draining) {
+            return Admission.FULL;
+        }
+        if (admitted.incrementAndGet() > maxInFlight + queueCapacity) {
+            admitted.decrementAndGet();
+            return Admission.FULL;
+        }
+        if (bulkhead.admitted.incrementAndGet() > bulkhead.maxConcurrent + bulkhead.queueCapacity) {
+            bulkhead.admitted.decrementAndGet();
+            admitted.decrementAndGet();
+            bulkhead.rejectedFull.increment();
+            return Admission.FULL;
+        }
+        if (!bulkhead.pending.tryReserve(merchantId)) {
+            bulkhead.admitted.decrementAndGet();
+            admitted.decrementAndGet();
+            settings(merchantId).rejected().increment();
+            return Admission.MERCHANT_FULL;
+        }
+        return Admission.ADMITTED;
+    }
+
+    /**
+     * Give back a reservation whose payment was never submitted.
+     */
+    public void release(Payment payment) {
+        Bulkhead bulkhead = bulkhead(payment);
+        bulkhead.pending.cancel(payment.getMerchantId());
+        bulkhead.admitted.decrementAndGet();
+        admitted.decrementAndGet();
+    }
+
+    /**
+     * Hand over a persisted payment. Must follow a successful {@link #admit}.
+     */
+    public void submit(Payment payment) {
+        submittedCounter.increment();
+        Bulkhead bulkhead = bulkhead(payment);
+        unfinished.put(payment.getId(), payment);
+        bulkhead.pending.offer(payment.getMerchantId(), new Job(payment, bulkhead, System.nanoTime()));
+        bulkhead.queued.incrementAndGet();
+        queued.incrementAndGet();
+        drain(bulkhead);
+    }
+
+    /**
+     * Take over a persisted payment that is still "processing" (recovery).
+     * Returns false, leaving it alone, when there is no capacity for it or
+     * its rail is unavailable.
+     */
+    public boolean redrive(Payment payment) {
+        Bulkhead bulkhead = bulkhead(payment);
+        if (bulkhead.breaker.isOpen() || tryAdmit(bulkhead, payment.getMerchantId()) != Admission.ADMITTED) {
+            return false;
+        }
+        submit(payment);
+        return true;
+    }
+
+    /**
+     * Stop admitting payments and give the admitted ones until
+     * {@code timeout} to finish, then stop processing. Returns the payments
+     * that did not finish; they are still "processing" in the database.
+     */
+    public List<Payment> stopGracefully(Duration timeout) throws InterruptedException {
+        draining = true;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (admitted.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        workers.shutdown();
+        // Completions already running get to commit.
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+        return List.copyOf(unfinished.values());
+    }
+
+    /**
+     * The lease_owner of payments this node processes.
+     */
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    /**
+     * Payments submitted here and not finished yet, queued or in flight.
+     */
+    public List<Payment> getUnfinished() {
+        return List.copyOf(unfinished.values());
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getInFlight() {
+        int inFlight = 0;
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            inFlight += bulkhead.inFlight();
+        }
+        return inFlight;
+    }
+
+    /* ================= PROCESSING ================= */
+
+    // One drainer per rail at a time; calls meanwhile make it go round once more.
+    private void drain(Bulkhead bulkhead) {
+        if (bulkhead.drains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainOnce(bulkhead);
+            missed = bulkhead.drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainOnce(Bulkhead bulkhead) {
+        while (!bulkhead.pending.isEmpty() && bulkhead.permits.tryAcquire()) {
+            CircuitBreaker.Permit permit = bulkhead.breaker.tryAcquire();
+            if (permit.kind() == CircuitBreaker.Kind.WAIT) {
+                // Half-open: the rest wait for the trial calls, which drain again when done.
+                bulkhead.permits.release();
+                return;
+            }
+            Job job = bulkhead.pending.poll();
+            if (job == null) {
+                if (permit.kind() == CircuitBreaker.Kind.CALL) {
+                    bulkhead.breaker.cancel(permit);
+                }
+                bulkhead.permits.release();
+                return;
+            }
+            bulkhead.queued.decrementAndGet();
+            queued.decrementAndGet();
+            settings(job.payment.getMerchantId()).queueDelay()
+                    .record(System.nanoTime() - job.admittedAt, TimeUnit.NANOSECONDS);
+            if (permit.kind() == CircuitBreaker.Kind.REJECT) {
+                bulkhead.rejectedOpen.increment();
+                dispatch(job, failed(job, "ACQUIRER_UNAVAILABLE",
+                        "Payments on " + bulkhead.rail + " are temporarily unavailable"));
+            } else {
+                authorize(job, permit);
+            }
+        }
+    }
+
+    private void authorize(Job job, CircuitBreaker.Permit permit) {
+        Bulkhead bulkhead = job.bulkhead;
+        long started = System.nanoTime();
+        CompletableFuture<Acquirer.Authorization> answer;
+        try {
+            answer = acquirer.authorize(job.payment);
+        } catch (RuntimeException e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        answer.orTimeout(bulkhead.timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((authorization, error) -> {
+            Outcome outcome;
+            PaymentStatus status;
+            if (error == null) {
+                bulkhead.breaker.onSuccess(permit);
+                if (authorization.approved()) {
+                    outcome = Outcome.APPROVED;
+                    status = new PaymentStatus(job.payment.getId(), "success", null, null, LocalDateTime.now());
+                } else {
+                    outcome = Outcome.DECLINED;
+                    status = failed(job, authorization.errorCode(), authorization.errorDescription());
+                }
+            } else {
+                bulkhead.breaker.onFailure(permit);
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    outcome = Outcome.TIMEOUT;
+                    status = failed(job, "ACQUIRER_TIMEOUT", "The acquirer did not answer in time");
+                } else {
+                    outcome = Outcome.ERROR;
+                    status = failed(job, "ACQUIRER_ERROR", "The acquirer could not process the payment");
+                }
+            }
+            bulkhead.latency.get(outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            dispatch(job, status);
+        });
+    }
+
+    private void dispatch(Job job, PaymentStatus status) {
+        try {
+            workers.execute(() -> complete(job, status));
+        } catch (RejectedExecutionException e) {
+            // Only during shutdown; the payment stays "processing" for recovery.
+            job.bulkhead.permits.release();
+            job.bulkhead.admitted.decrementAndGet();
+            admitted.decrementAndGet();
+        }
+    }
+
+    private void complete(Job job, PaymentStatus status) {
+        String paymentId = job.payment.getId();
+        if ("success".equals(status.getStatus())) {
+            successCounter.increment();
+        } else {
+            failedCounter.increment();
+        }
+        // With group commit this returns at once and the callback runs after the shared commit.
+        paymentWriter.complete(job.payment, status).whenComplete((updated, error) -> {
+            try {
+                if (error != null) {
+                    log.error("Failed to finalize payment {}", paymentId, error);
+                } else if (updated) {
+                    statusNotifier.publish(status);
+                }
+            } finally {
+                latencyTimer.record(System.nanoTime() - job.admittedAt, TimeUnit.NANOSECONDS);
+                finish(job);
+            }
+        });
+    }
+
+    private void finish(Job job) {
+        unfinished.remove(job.payment.getId());
+        job.bulkhead.permits.release();
+        job.bulkhead.admitted.decrementAndGet();
+        admitted.decrementAndGet();
+        drain(job.bulkhead);
+    }
+
+    private static PaymentStatus failed(Job job, String errorCode, String errorDescription) {
+        return new PaymentStatus(job.payment.getId(), "failed", errorCode, errorDescription, LocalDateTime.now());
+    }
+
+    /* ================= MERCHANT TIERS ================= */
+
+    // app.payment.processing.fair.merchants.<id>.tier, then the tier's settings, then the defaults.
+    private MerchantSettings settings(UUID merchantId) {
+        MerchantSettings settings = merchantSettings.get(merchantId);
+        if (settings == null) {
+            settings = merchantSettings.computeIfAbsent(merchantId, id -> {
+                String merchant = FAIR_PREFIX + "merchants." + id + ".";
+                String name = environment.getProperty(merchant + "tier", defaultTier);
+                String tierPrefix = FAIR_PREFIX + "tiers." + name + ".";
+                int weight = environment.getProperty(merchant + "weight", Integer.class,
+                        environment.getProperty(tierPrefix + "weight", Integer.class, defaultWeight));
+                int maxQueued = environment.getProperty(merchant + "max-queued", Integer.class,
+                        environment.getProperty(tierPrefix + "max-queued", Integer.class, defaultMaxQueued));
+                return new MerchantSettings(new FairQueue.Share(Math.max(1, weight), maxQueued),
+                        meterRegistry.counter("gateway.processing.fair.rejected", "tier", name),
+                        Timer.builder("gateway.processing.queue.delay")
+                                .description("Time a payment waited in its merchant's queue")
+                                .tags("merchant", id.toString(), "tier", name)
+                                .register(meterRegistry));
+            });
+        }
+        return settings;
+    }
+
+    /* ================= BULKHEADS ================= */
+
+    private Bulkhead bulkhead(Payment payment) {
+        return bulkheads.computeIfAbsent(Rails.of(payment), this::newBulkhead);
+    }
+
+    // Settings from app.acquirer.rails.<rail>.*, else the app.acquirer.* defaults.
+    private Bulkhead newBulkhead(String rail) {
+        int maxConcurrent = Rails.property(environment, PREFIX, rail, "max-concurrent", Integer.class,
+                railMaxConcurrent);
+        int capacity = Rails.property(environment, PREFIX, rail, "queue-capacity", Integer.class,
+                railQueueCapacity);
+        Duration timeout = Rails.property(environment, PREFIX, rail, "timeout", Duration.class, railTimeout);
+        Counter opened = meterRegistry.counter("gateway.acquirer.breaker.transitions", "rail", rail, "to", "open");
+        Counter halfOpened = meterRegistry.counter("gateway.acquirer.breaker.transitions", "rail", rail,
+                "to", "half_open");
+        Counter closed = meterRegistry.counter("gateway.acquirer.breaker.transitions", "rail", rail, "to", "closed");
+        CircuitBreaker breaker = new CircuitBreaker(
+                Rails.property(environment, PREFIX, rail, "breaker.window", Integer.class, breakerWindow),
+                Rails.property(environment, PREFIX, rail, "breaker.minimum-calls", Integer.class,
+                        breakerMinimumCalls),
+                Rails.property(environment, PREFIX, rail, "breaker.failure-rate", Double.class, breakerFailureRate),
+                Rails.property(environment, PREFIX, rail, "breaker.open-duration", Duration.class,
+                        breakerOpenDuration).toNanos(),
+                Rails.property(environment, PREFIX, rail, "breaker.half-open-calls", Integer.class,
+                        breakerHalfOpenCalls),
+                state -> {
+                    switch (state) {
+                        case OPEN -> {
+                            opened.increment();
+                            log.warn("Circuit breaker for {} opened; failing its payments fast", rail);
+                        }
+                        case HALF_OPEN -> halfOpened.increment();
+                        case CLOSED -> {
+                            closed.increment();
+                            log.info("Circuit breaker for {} closed", rail);
+                        }
+                    }
+                });
+
+        Map<Outcome, Timer> latency = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            latency.put(outcome, Timer.builder("gateway.acquirer.latency")
+                    .description("Acquirer answer time by rail and outcome")
+                    .tags("rail", rail, "outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Bulkhead bulkhead = new Bulkhead(rail, maxConcurrent, capacity, timeout, breaker, latency,
+                new FairQueue<>(merchantId -> settings(merchantId).share()),
+                meterRegistry.counter("gateway.acquirer.rejected", "rail", rail, "reason", "full"),
+                meterRegistry.counter("gateway.acquirer.rejected", "rail", rail, "reason", "open"));
+
+        Gauge.builder("gateway.acquirer.bulkhead.in-flight", bulkhead, Bulkhead::inFlight)
+                .description("Calls in flight at the acquirer")
+                .tag("rail", rail)
+                .register(meterRegistry);
+        Gauge.builder("gateway.acquirer.bulkhead.queued", bulkhead.queued, AtomicInteger::get)
+                .description("Payments waiting for a call slot")
+                .tag("rail", rail)
+                .register(meterRegistry);
+        Gauge.builder("gateway.acquirer.bulkhead.saturation", bulkhead, b -> (double) b.inFlight() / b.maxConcurrent)
+                .description("Share of max-concurrent in use")
+                .tag("rail", rail)
+                .register(meterRegistry);
+        Gauge.builder("gateway.acquirer.breaker.state", breaker, b -> b.state().ordinal())
+                .description("0 closed, 1 half-open, 2 open")
+                .tag("rail", rail)
+                .register(meterRegistry);
+        return bulkhead;
+    }
+
+    private enum Outcome { APPROVED, DECLINED, ERROR, TIMEOUT }
+
+    private enum Admission { ADMITTED, FULL, MERCHANT_FULL }
+
+    private record MerchantSettings(FairQueue.Share share, Counter rejected, Timer queueDelay) {}
+
+    private static final class Bulkhead {
+
+        final String rail;
+        final int maxConcurrent;
+        final int queueCapacity;
+        final Duration timeout;
+        final CircuitBreaker breaker;
+        final Map<Outcome, Timer> latency;
+        final FairQueue<UUID, Job> pending;
+        final Counter rejectedFull;
+        final Counter rejectedOpen;
+        // Calls in flight at the acquirer, or finishing.
+        final Semaphore permits;
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger admitted = new AtomicInteger();
+        final AtomicInteger drains = new AtomicInteger();
+
+        Bulkhead(String rail, int maxConcurrent, int queueCapacity, Duration timeout, CircuitBreaker breaker,
+                 Map<Outcome, Timer> latency, FairQueue<UUID, Job> pending, Counter rejectedFull,
+                 Counter rejectedOpen) {
+            this.rail = rail;
+            this.maxConcurrent = maxConcurrent;
+            this.queueCapacity = queueCapacity;
+            this.timeout = timeout;
+            this.breaker = breaker;
+            this.latency = latency;
+            this.pending = pending;
+            this.rejectedFull = rejectedFull;
+            this.rejectedOpen = rejectedOpen;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        int inFlight() {
+            return maxConcurrent - permits.availablePermits();
+        }
+    }
+
+    private record Job(Payment payment, Bulkhead bulkhead, long admittedAt) {}
+}
@@ -0,0 +1,294 @@
+package com.gateway.services;
+
+import com.gateway.dto.PaymentStatus;
+import com.gateway.models.Payment;
+import com.gateway.repositories.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finishes payments left "processing" by a node that crashed or was
+ * redeployed. Processing jobs only live in memory (PaymentProcessingEngine),
+ * so without this such a payment, and the order it holds, never move again.
+ *
+ * Every payment is leased to the node processing it from its insert on,
+ * and this node renews the leases of its unfinished payments every
+ * {@code renew-interval}, so a payment that only queues or waits on a slow
+ * acquirer is never taken over. At startup and every {@code interval-ms},
+ * payments whose lease ran out (or, written before leases, processing for
+ * longer than {@code stuck-after}) are leased in keyset batches (SKIP
+ * LOCKED, so nodes split the work) and either handed to this node's engine
+ * again or, once older than {@code timeout}, failed with PAYMENT_TIMEOUT.
+ * Both release the order as a normal completion would.
+ *
+ * On shutdown the engine gets {@code drain-timeout} to finish its payments;
+ * the rest are released so any node recovers them at its next sweep.
+ */
+@Service
+public class PaymentRecoverySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentRecoverySweeper.class);
+
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // IDs per release statement; a full engine holds far more than one statement may bind.
+    private static final int RELEASE_CHUNK = 1000;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentProcessingEngine processingEngine;
+
+    @Autowired
+    private PaymentWriter paymentWriter;
+
+    @Autowired
+    private PaymentStatusNotifier statusNotifier;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.payment.recovery.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.payment.recovery.stuck-after:2m}")
+    private Duration stuckAfter;
+
+    @Value("${app.payment.recovery.timeout:15m}")
+    private Duration timeout;
+
+    @Value("${app.payment.recovery.lease:2m}")
+    private Duration lease;
+
+    @Value("${app.payment.recovery.renew-interval:30s}")
+    private Duration renewInterval;
+
+    @Value("${app.payment.recovery.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.payment.recovery.max-per-sweep:1000}")
+    private int maxPerSweep;
+
+    @Value("${app.payment.recovery.drain-timeout:15s}")
+    private Duration drainTimeout;
+
+    private String owner;
+    private volatile boolean stopping;
+    private ScheduledExecutorService renewer;
+
+    private Counter redrivenCounter;
+    private Counter timedOutCounter;
+    private Counter deferredCounter;
+    private Counter releasedCounter;
+    private Counter renewFailedCounter;
+    private Timer sweepTimer;
+
+    @PostConstruct
+    void start() {
+        if (renewInterval.compareTo(lease) >= 0) {
+            throw new IllegalStateException("app.payment.recovery.renew-interval (" + renewInterval
+                    + ") must be shorter than app.payment.recovery.lease (" + lease + ")");
+        }
+        owner = processingEngine.getLeaseOwner();
+        redrivenCounter = meterRegistry.counter("gateway.recovery.payments", "outcome", "redriven");
+        timedOutCounter = meterRegistry.counter("gateway.recovery.payments", "outcome", "timed_out");
+        deferredCounter = meterRegistry.counter("gateway.recovery.payments", "outcome", "deferred");
+        releasedCounter = meterRegistry.counter("gateway.recovery.payments", "outcome", "released");
+        renewFailedCounter = meterRegistry.counter("gateway.recovery.lease.renew.failed");
+        sweepTimer = Timer.builder("gateway.recovery.sweep")
+                .description("Duration of one recovery sweep")
+                .register(meterRegistry);
+        // Its own thread: a long sweep on the shared scheduler must not let leases run out.
+        renewer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("payment-lease-"));
+        renewer.scheduleWithFixedDelay(this::renewLeases, renewInterval.toMillis(), renewInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /* ================= LEASES ================= */
+
+    private void renewLeases() {
+        List<Payment> unfinished = processingEngine.getUnfinished();
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        LocalDateTime leaseUntil = LocalDateTime.now().plus(lease);
+        try {
+            for (int i = 0; i < unfinished.size(); i += RELEASE_CHUNK) {
+                List<Payment> chunk = unfinished.subList(i, Math.min(i + RELEASE_CHUNK, unfinished.size()));
+                paymentRepository.renewLeases(chunk.stream().map(Payment::getId).toList(),
+                        minCreatedAt(chunk), maxCreatedAt(chunk), owner, leaseUntil);
+            }
+        } catch (RuntimeException e) {
+            // Retried at the next interval, well before the leases run out.
+            renewFailedCounter.increment();
+            log.warn("Failed to renew the leases of {} payments: {}", unfinished.size(), e.getMessage());
+        }
+    }
+
+    /* ================= SWEEP ================= */
+
+    @Scheduled(fixedDelayString = "${app.payment.recovery.interval-ms:30000}")
+    public void sweep() {
+        if (!enabled || stopping) {
+            return;
+        }
+        long started = System.nanoTime();
+        int redriven = 0;
+        int timedOut = 0;
+        LocalDateTime afterCreatedAt = KEYSET_START;
+        String afterId = "";
+        try {
+            while (!stopping && redriven + timedOut < maxPerSweep) {
+                LocalDateTime now = LocalDateTime.now();
+                int limit = Math.min(batchSize, maxPerSweep - redriven - timedOut);
+                List<Payment> batch = new ArrayList<>(paymentRepository.claimStuck(afterCreatedAt, afterId,
+                        now, now.minus(stuckAfter), owner, now.plus(lease), limit));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                batch.sort(Comparator.comparing(Payment::getCreatedAt).thenComparing(Payment::getId));
+                Payment last = batch.get(batch.size() - 1);
+                afterCreatedAt = last.getCreatedAt();
+                afterId = last.getId();
+
+                List<Payment> deferred = new ArrayList<>();
+                List<TimedOut> timeouts = new ArrayList<>();
+                LocalDateTime expired = now.minus(timeout);
+                for (Payment payment : batch) {
+                    if (payment.getCreatedAt().isBefore(expired)) {
+                        timeouts.add(timeOut(payment));
+                    } else if (processingEngine.redrive(payment)) {
+                        redriven++;
+                    } else {
+                        deferred.add(payment);
+                    }
+                }
+                for (TimedOut timedOutPayment : timeouts) {
+                    if (timedOutPayment.await()) {
+                        timedOut++;
+                    }
+                }
+                if (!deferred.isEmpty()) {
+                    // The engine is full; the rest wait for the next sweep.
+                    release(deferred);
+                    deferredCounter.increment(deferred.size());
+                    break;
+                }
+                if (batch.size() < limit) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Payment recovery sweep failed", e);
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            sweepTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            redrivenCounter.increment(redriven);
+            timedOutCounter.increment(timedOut);
+            if (redriven + timedOut > 0) {
+                double seconds = Math.max(elapsed, 1) / 1e9;
+                log.info("Recovered {} stuck payments ({} re-driven, {} timed out) in {} ms, {}/s",
+                        redriven + timedOut, redriven, timedOut, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        Math.round((redriven + timedOut) / seconds));
+            }
+        }
+    }
+
+    // Not awaited one by one: with group commit, a batch's time-outs share commits.
+    private TimedOut timeOut(Payment payment) {
+        PaymentStatus status = new PaymentStatus(payment.getId(), "failed", "PAYMENT_TIMEOUT",
+                "Payment timed out before the acquirer answered", LocalDateTime.now());
+        return new TimedOut(status, paymentWriter.complete(payment, status));
+    }
+
+    private void release(List<Payment> payments) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < payments.size(); i += RELEASE_CHUNK) {
+            List<Payment> chunk = payments.subList(i, Math.min(i + RELEASE_CHUNK, payments.size()));
+            paymentRepository.releaseLeases(chunk.stream().map(Payment::getId).toList(),
+                    minCreatedAt(chunk), maxCreatedAt(chunk), now);
+        }
+    }
+
+    private static LocalDateTime minCreatedAt(List<Payment> payments) {
+        return payments.stream().map(Payment::getCreatedAt).min(Comparator.naturalOrder()).orElseThrow();
+    }
+
+    private static LocalDateTime maxCreatedAt(List<Payment> payments) {
+        return payments.stream().map(Payment::getCreatedAt).max(Comparator.naturalOrder()).orElseThrow();
+    }
+
+    /* ================= SHUTDOWN ================= */
+
+    /**
+     * Runs before the engine and the writers are destroyed (they are
+     * dependencies), so finishing payments can still commit.
+     */
+    @PreDestroy
+    void drain() throws InterruptedException {
+        stopping = true;
+        List<Payment> unfinished = processingEngine.stopGracefully(drainTimeout);
+        renewer.shutdownNow();
+        if (unfinished.isEmpty()) {
+            log.info("All in-flight payments finished before shutdown");
+            return;
+        }
+        try {
+            release(unfinished);
+            releasedCounter.increment(unfinished.size());
+            log.info("Released {} unfinished payments for recovery by another node", unfinished.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to release {} unfinished payments; they are recovered after stuck-after: {}",
+                    unfinished.size(), e.getMessage());
+        }
+    }
+
+    private final class TimedOut {
+
+        private final PaymentStatus status;
+        private final CompletableFuture<Boolean> done;
+
+        TimedOut(PaymentStatus status, CompletableFuture<Boolean> done) {
+            this.status = status;
+            this.done = done;
+        }
+
+        boolean await() {
+            try {
+                if (!done.join()) {
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                // The lease runs out and a later sweep tries again.
+                log.warn("Failed to time out payment {}: {}", status.getId(), e.getMessage());
+                return false;
+            }
+            statusNotifier.publish(status);
+            return true;
+        }
+    }
+}
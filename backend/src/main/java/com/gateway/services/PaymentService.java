@@ -1,27 +1,92 @@
 package com.gateway.services;
 
 import com.gateway.dto.CreatePaymentRequest;
+import com.gateway.dto.ListQuery;
+import com.gateway.dto.PageResponse;
 import com.gateway.models.Order;
 import com.gateway.models.Payment;
 import com.gateway.repositories.PaymentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
 @Service
 public class PaymentService {
 
+    // Re-reads of an order whose version moved on while it stayed payable.
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+
     @Autowired
     private PaymentRepository paymentRepository;
 
     @Autowired
-    private ValidationService validationService;
+    private PaymentProcessingEngine processingEngine;
+
+    @Autowired
+    private PaymentWriter paymentWriter;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderStateMachine orderStates;
 
     /* ================= CREATE PAYMENT ================= */
 
-    public Payment createAndProcessPayment(CreatePaymentRequest req, Order order) {
+    /**
+     * Create a payment from an already validated request. For card payments
+     * {@code card} is the analysis the caller validated against. Fails with
+     * 409 when the order is paid or another payment for it is in flight.
+     */
+    public Payment createAndProcessPayment(CreatePaymentRequest req, Order order, CardAnalysis card) {
+
+        orderStates.checkPayable(order);
+
+        Payment payment = newPayment(req, order, card);
+        processingEngine.admit(payment);
+        Payment saved;
+        long started = RequestStages.start();
+        try {
+            saved = claimAndInsert(order, current -> paymentWriter.insert(payment, current));
+        } catch (RuntimeException e) {
+            processingEngine.release(payment);
+            throw e;
+        } finally {
+            RequestStages.end("save", started);
+        }
+        processingEngine.submit(saved);
+        return saved;
+    }
 
+    /**
+     * Record a payment the risk checks declined: created as any other, so
+     * it takes its turn on the order, and failed at once with the decline
+     * reason, without going to the acquirer.
+     */
+    public Payment createDeclinedPayment(CreatePaymentRequest req, Order order, CardAnalysis card,
+                                         RiskCheckService.Decision decision) {
+
+        orderStates.checkPayable(order);
+
+        Payment payment = newPayment(req, order, card);
+        long started = RequestStages.start();
+        try {
+            return claimAndInsert(order, current -> paymentWriter.insertFailed(payment, current,
+                    decision.errorCode(), decision.errorDescription()));
+        } finally {
+            RequestStages.end("save", started);
+        }
+    }
+
+    private Payment newPayment(CreatePaymentRequest req, Order order, CardAnalysis card) {
         Payment payment = new Payment();
-        payment.setId("pay_" + System.nanoTime());
+        payment.setId(idGenerator.newPaymentId());
         payment.setOrderId(order.getId());
         payment.setMerchantId(order.getMerchantId());
         payment.setAmount(order.getAmount());
@@ -29,34 +94,33 @@ public class PaymentService {
         payment.setMethod(req.getMethod());
         payment.setStatus("processing");
 
-        /* ---------- UPI ---------- */
         if ("upi".equals(req.getMethod())) {
-
-            if (!validationService.isValidVpa(req.getVpa())) {
-                throw new ApiException("BAD_REQUEST_ERROR", "Invalid VPA");
-            }
-
             payment.setVpa(req.getVpa());
+        } else if ("card".equals(req.getMethod()) && card != null) {
+            payment.setCardNetwork(card.getNetwork().code());
+            payment.setCardLast4(card.getLast4());
         }
+        return payment;
+    }
 
-        /* ---------- CARD ---------- */
-        else if ("card".equals(req.getMethod())) {
-
-            CreatePaymentRequest.CardDetails card = req.getCard();
-
-            if (!validationService.isValidCard(card)) {
-                throw new ApiException("BAD_REQUEST_ERROR", "Invalid card");
+    /**
+     * Insert the payment with the claim on its order. A claim misses when the
+     * order changed after it was read: a concurrent payment took it, or the
+     * one before finished. Retried from a fresh read while the order is
+     * still payable; lock-free, so a hot order never queues requests.
+     */
+    private Payment claimAndInsert(Order order, Function<Order, Payment> insert) {
+        Order current = order;
+        for (int attempt = 1; ; attempt++) {
+            Payment saved = insert.apply(current);
+            if (saved != null) {
+                return saved;
+            }
+            current = orderService.getOrder(order.getId());
+            if (!OrderStateMachine.isPayable(current) || attempt == MAX_CLAIM_ATTEMPTS) {
+                throw orderStates.conflict(current);
             }
-
-            payment.setCardNetwork(
-                    validationService.detectCardNetwork(card.getNumber())
-            );
-            payment.setCardLast4(
-                    validationService.getCardLast4(card.getNumber())
-            );
         }
-
-        return paymentRepository.save(payment);
     }
 
     /* ================= GET PAYMENT ================= */
@@ -65,6 +129,16 @@ public class PaymentService {
         if (paymentId == null || paymentId.isBlank()) {
             return null;
         }
-        return paymentRepository.findById(paymentId).orElse(null);
+        return PartitionLookup.findById(paymentId,
+                paymentRepository::findByIdAndCreatedAtBetween, paymentRepository::findById).orElse(null);
+    }
+
+    /* ================= LIST PAYMENTS ================= */
+
+    public PageResponse<Payment> listPayments(UUID merchantId, ListQuery query) {
+        int limit = PageCursor.limit(query);
+        List<Payment> rows = paymentRepository.findPage(
+                merchantId, PageCursor.filter(query, query.getMethod()), limit + 1);
+        return PageCursor.page(rows, limit, Payment::getCreatedAt, Payment::getId);
     }
 }
@@ -0,0 +1,128 @@
+package com.gateway.services;
+
+import com.gateway.dto.PaymentStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-process fan-out of final payment statuses to waiting checkout pages.
+ *
+ * {@link PaymentProcessingEngine} publishes once per payment; each waiter is
+ * a callback held by an async request (SSE or long-poll), so waiting costs no
+ * thread. Only payments finalized on this node are pushed: a waiter whose
+ * payment finished elsewhere times out and reads the status on reconnect.
+ */
+@Service
+public class PaymentStatusNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentStatusNotifier.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.payment.status.max-waiters:20000}")
+    private int maxWaiters;
+
+    @Value("${app.payment.status.timeout:30s}")
+    private Duration timeout;
+
+    private final Map<String, List<Consumer<PaymentStatus>>> listeners = new ConcurrentHashMap<>();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private Counter deliveredCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void init() {
+        deliveredCounter = meterRegistry.counter("gateway.payment.status.notifications");
+        rejectedCounter = meterRegistry.counter("gateway.payment.status.rejected");
+        Gauge.builder("gateway.payment.status.waiters", waiters, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * How long a waiter is held before it is answered with the current status.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Register {@code listener} for the final status of a payment. The caller
+     * must close the subscription when its request ends, however it ends.
+     */
+    public Subscription subscribe(String paymentId, Consumer<PaymentStatus> listener) {
+        if (waiters.incrementAndGet() > maxWaiters) {
+            waiters.decrementAndGet();
+            rejectedCounter.increment();
+            throw new ApiException("TOO_MANY_WAITERS",
+                    "Too many clients waiting for payment status, retry later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        listeners.compute(paymentId, (id, list) -> {
+            List<Consumer<PaymentStatus>> l = list != null ? list : new CopyOnWriteArrayList<>();
+            l.add(listener);
+            return l;
+        });
+        return new Subscription(paymentId, listener);
+    }
+
+    public void publish(PaymentStatus status) {
+        List<Consumer<PaymentStatus>> list = listeners.remove(status.getId());
+        if (list == null) {
+            return;
+        }
+        for (Consumer<PaymentStatus> listener : list) {
+            try {
+                listener.accept(status);
+                deliveredCounter.increment();
+            } catch (RuntimeException e) {
+                log.debug("Could not deliver status of payment {}", status.getId(), e);
+            }
+        }
+    }
+
+    public int getWaiters() {
+        return waiters.get();
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final String paymentId;
+        private final Consumer<PaymentStatus> listener;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(String paymentId, Consumer<PaymentStatus> listener) {
+            this.paymentId = paymentId;
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                waiters.decrementAndGet();
+                listeners.computeIfPresent(paymentId, (id, list) -> {
+                    list.remove(listener);
+                    return list.isEmpty() ? null : list;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.gateway.services;
+
+import com.gateway.dto.PaymentStatus;
+import com.gateway.models.Order;
+import com.gateway.models.Payment;
+import com.gateway.repositories.PaymentRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write path for payment inserts and final status updates.
+ *
+ * An insert commits together with the claim on its order and a final status
+ * together with the order's release ({@link OrderStateMachine}), so an order
+ * is never left holding a payment that does not exist.
+ *
+ * By default every write is its own transaction. With
+ * {@code app.payment.group-commit.enabled} concurrent writes are queued and
+ * a writer thread commits them together: everything that arrives within
+ * {@code max-wait} of the first write, up to {@code max-batch}, becomes one
+ * batched insert plus one batched update and a single commit. Callers are
+ * completed only after that commit, so a returned payment is as durable as
+ * with the per-request path; what is shared is the fsync.
+ */
+@Service
+public class PaymentWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentWriter.class);
+
+    // Same statement as PaymentRepository#completeProcessing, as a JDBC batch.
+    private static final String COMPLETE_SQL =
+            "UPDATE payments SET status = ?, error_code = ?, error_description = ?, updated_at = ?, " +
+            "version = version + 1 WHERE id = ? AND created_at = ? AND version = ? AND status = 'processing'";
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentCompletionService paymentCompletion;
+
+    @Autowired
+    private OrderStateMachine orderStates;
+
+    @Autowired
+    private WebhookService webhookService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.payment.group-commit.enabled:false}")
+    private boolean groupCommit;
+
+    @Value("${app.payment.group-commit.max-batch:200}")
+    private int maxBatch;
+
+    @Value("${app.payment.group-commit.max-wait:2ms}")
+    private Duration maxWait;
+
+    @Value("${app.payment.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.payment.group-commit.writer-threads:2}")
+    private int writerThreads;
+
+    private BlockingQueue<Write> queue;
+    private ExecutorService writers;
+    private volatile boolean running = true;
+
+    private DistributionSummary batchSize;
+    private Timer commitTimer;
+
+    @PostConstruct
+    void start() {
+        if (!groupCommit) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchSize = DistributionSummary.builder("gateway.payment.group-commit.batch.size")
+                .description("Writes per shared commit")
+                .register(meterRegistry);
+        commitTimer = meterRegistry.timer("gateway.payment.group-commit.commit");
+        Gauge.builder("gateway.payment.group-commit.queue.depth", queue, BlockingQueue::size)
+                .register(meterRegistry);
+
+        // More than one writer lets the next batch fill while the last one waits on fsync.
+        writers = Executors.newFixedThreadPool(writerThreads, new CustomizableThreadFactory("payment-writer-"));
+        for (int i = 0; i < writerThreads; i++) {
+            writers.execute(this::run);
+        }
+        log.info("Payment group commit enabled: max-batch={}, max-wait={}", maxBatch, maxWait);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writers == null) {
+            return;
+        }
+        // Writers drain what is already queued before exiting.
+        running = false;
+        writers.shutdown();
+        writers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /* ================= WRITES ================= */
+
+    /**
+     * Claim {@code order} at the version it was read and insert a new payment
+     * for it; returns once both are committed. Returns null, having written
+     * nothing, when the order was no longer payable at that version.
+     */
+    public Payment insert(Payment payment, Order order) {
+        if (!groupCommit) {
+            return insertNow(payment, order);
+        }
+        Insert write = new Insert(payment, order, new CompletableFuture<>());
+        if (!queue.offer(write)) {
+            // Writers saturated: fall back to a transaction of our own.
+            return insertNow(payment, order);
+        }
+        try {
+            return write.done.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    private Payment insertNow(Payment payment, Order order) {
+        return transactionTemplate.execute(tx -> orderStates.claim(order) ? paymentRepository.save(payment) : null);
+    }
+
+    /**
+     * Like {@link #insert}, for a payment failed before processing: it is
+     * inserted and completed with the error in one transaction, so it is
+     * never seen "processing" (recovery would send it to the acquirer).
+     * Always its own transaction; these are rare.
+     */
+    public Payment insertFailed(Payment payment, Order order, String errorCode, String errorDescription) {
+        Payment saved = transactionTemplate.execute(tx -> {
+            if (!orderStates.claim(order)) {
+                return null;
+            }
+            Payment inserted = paymentRepository.saveAndFlush(payment);
+            paymentCompletion.complete(inserted, new PaymentStatus(inserted.getId(), "failed",
+                    errorCode, errorDescription, inserted.getCreatedAt()));
+            return inserted;
+        });
+        // Detached now: the row was updated by query, the entity only mirrors it.
+        if (saved != null) {
+            saved.setStatus("failed");
+            saved.setErrorCode(errorCode);
+            saved.setErrorDescription(errorDescription);
+        }
+        return saved;
+    }
+
+    /**
+     * Move a payment out of "processing" and record its webhook event.
+     * Completes with false when the payment was no longer processing.
+     */
+    public CompletableFuture<Boolean> complete(Payment payment, PaymentStatus status) {
+        if (!groupCommit) {
+            return completeNow(payment, status);
+        }
+        Completion write = new Completion(payment, status, new CompletableFuture<>());
+        return queue.offer(write) ? write.done : completeNow(payment, status);
+    }
+
+    private CompletableFuture<Boolean> completeNow(Payment payment, PaymentStatus status) {
+        try {
+            return CompletableFuture.completedFuture(paymentCompletion.complete(payment, status));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /* ================= GROUP COMMIT ================= */
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWait.toNanos();
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Write next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Payment writer failed", e);
+            } finally {
+                for (Write write : batch) {
+                    // Only reached when flush itself threw; never leave a caller hanging.
+                    write.future().completeExceptionally(new IllegalStateException("Payment write was not committed"));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Write> batch) {
+        List<Insert> inserts = new ArrayList<>();
+        List<Completion> completions = new ArrayList<>();
+        for (Write write : batch) {
+            if (write instanceof Insert insert) {
+                inserts.add(insert);
+            } else {
+                completions.add((Completion) write);
+            }
+        }
+
+        Written written;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            written = transactionTemplate.execute(tx -> write(inserts, completions));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+            } else {
+                // One bad row must not fail the rest: replay the batch write by write.
+                log.warn("Group commit of {} payment writes failed, retrying one by one: {}",
+                        batch.size(), e.getMessage());
+                replay(batch);
+            }
+            batch.clear();
+            return;
+        } finally {
+            sample.stop(commitTimer);
+        }
+        batchSize.record(batch.size());
+
+        for (int i = 0; i < inserts.size(); i++) {
+            Insert insert = inserts.get(i);
+            insert.done.complete(written.claimed[i] ? insert.payment : null);
+        }
+        for (int i = 0; i < completions.size(); i++) {
+            completions.get(i).done.complete(written.completed[i] != 0);
+        }
+        batch.clear();
+    }
+
+    private Written write(List<Insert> inserts, List<Completion> completions) {
+        boolean[] claimed = new boolean[0];
+        if (!inserts.isEmpty()) {
+            claimed = orderStates.claimAll(inserts.stream().map(Insert::order).toList());
+            List<Payment> payments = new ArrayList<>(inserts.size());
+            for (int i = 0; i < inserts.size(); i++) {
+                if (claimed[i]) {
+                    payments.add(inserts.get(i).payment);
+                }
+            }
+            paymentRepository.saveAll(payments);
+            paymentRepository.flush();
+        }
+        if (completions.isEmpty()) {
+            return new Written(claimed, new int[0]);
+        }
+        int[] updated = jdbcTemplate.batchUpdate(COMPLETE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Completion completion = completions.get(i);
+                PaymentStatus status = completion.status;
+                ps.setString(1, status.getStatus());
+                ps.setString(2, status.getErrorCode());
+                ps.setString(3, status.getErrorDescription());
+                ps.setTimestamp(4, Timestamp.valueOf(status.getUpdatedAt()));
+                ps.setString(5, status.getId());
+                ps.setTimestamp(6, Timestamp.valueOf(completion.payment.getCreatedAt()));
+                ps.setLong(7, completion.payment.getVersion());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return completions.size();
+            }
+        });
+        List<Payment> settled = new ArrayList<>();
+        List<PaymentStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < completions.size(); i++) {
+            if (updated[i] != 0) {
+                settled.add(completions.get(i).payment);
+                statuses.add(completions.get(i).status);
+            }
+        }
+        orderStates.settleAll(settled, statuses);
+        for (int i = 0; i < settled.size(); i++) {
+            webhookService.recordPaymentEvent(settled.get(i), statuses.get(i));
+        }
+        return new Written(claimed, updated);
+    }
+
+    private void replay(List<Write> batch) {
+        for (Write write : batch) {
+            try {
+                if (write instanceof Insert insert) {
+                    insert.done.complete(insertNow(insert.payment, insert.order));
+                } else {
+                    Completion completion = (Completion) write;
+                    completion.done.complete(paymentCompletion.complete(completion.payment, completion.status));
+                }
+            } catch (RuntimeException e) {
+                write.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private sealed interface Write permits Insert, Completion {
+        CompletableFuture<?> future();
+    }
+
+    private record Insert(Payment payment, Order order, CompletableFuture<Payment> done) implements Write {
+        @Override
+        public CompletableFuture<?> future() {
+            return done;
+        }
+    }
+
+    // Per insert whether its order was claimed; per completion the rows updated.
+    private record Written(boolean[] claimed, int[] completed) {
+    }
+
+    private record Completion(Payment payment, PaymentStatus status, CompletableFuture<Boolean> done)
+            implements Write {
+        @Override
+        public CompletableFuture<?> future() {
+            return done;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.models.Order;
+import com.gateway.repositories.OrderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of the serialized public order view used by checkout.
+ *
+ * Entries hold the response bytes plus an ETag and Last-Modified derived
+ * from updated_at, so a hit costs neither a query nor serialization, and a
+ * conditional GET is answered 304 from memory. The cache is bounded by bytes
+ * ({@code app.orders.public-cache.max-bytes}); unknown IDs are remembered for
+ * {@code negative-ttl} so random probes do not reach the database.
+ * {@link OrderCacheListener} evicts an order whenever it is written through JPA.
+ *
+ * Evictions reach every node through {@link OrderCacheBroadcaster}; while a
+ * node cannot hear the others it reads through without caching.
+ */
+@Service
+public class PublicOrderCache {
+
+    // Longer IDs cannot exist (orders.id is VARCHAR(64)) and are not worth caching.
+    private static final int MAX_ID_LENGTH = 64;
+    private static final int ENTRY_OVERHEAD = 96;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OrderCacheBroadcaster broadcaster;
+
+    @Value("${app.orders.public-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${app.orders.public-cache.ttl:5m}")
+    private Duration ttl;
+
+    @Value("${app.orders.public-cache.negative-max-size:100000}")
+    private long negativeMaxSize;
+
+    @Value("${app.orders.public-cache.negative-ttl:10s}")
+    private Duration negativeTtl;
+
+    private Cache<String, OrderView> views;
+    private Cache<String, Boolean> unknownIds;
+    private final AtomicLong evictAllCount = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        views = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String id, OrderView view) -> ENTRY_OVERHEAD + id.length() + view.body().length)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        unknownIds = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, views, "orders.public");
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownIds, "orders.public.unknown");
+        broadcaster.setReceiver(this::evict, this::evictAll);
+    }
+
+    /**
+     * The serialized view of an order, or null if there is no such order.
+     */
+    public OrderView get(String orderId) {
+        if (orderId == null || orderId.isEmpty() || orderId.length() > MAX_ID_LENGTH) {
+            return null;
+        }
+        // Another node's change could go unheard, so nothing is served from or kept in memory.
+        if (!broadcaster.isConnected()) {
+            return load(orderId).map(this::view).orElse(null);
+        }
+        if (unknownIds.getIfPresent(orderId) != null) {
+            return null;
+        }
+        // Caffeine holds an invalidate of this ID until the load is stored, so the
+        // invalidate always removes what a load that read the old row put back.
+        long generation = evictAllCount.get();
+        OrderView view = views.get(orderId, id -> {
+            Optional<Order> order = load(id);
+            if (order.isEmpty()) {
+                // Still inside the load, so ordered against invalidate the same way.
+                unknownIds.put(id, Boolean.TRUE);
+                return null;
+            }
+            return view(order.get());
+        });
+        // invalidateAll skips loads in flight: drop one that may have read a row from before it.
+        if (evictAllCount.get() != generation) {
+            evict(orderId);
+        }
+        return view;
+    }
+
+    // An entry outlives any replica lag, so fill it from the primary.
+    private Optional<Order> load(String orderId) {
+        return ReadRouting.primary(() -> PartitionLookup.findById(orderId,
+                orderRepository::findByIdAndCreatedAtBetween, orderRepository::findById));
+    }
+
+    private OrderView view(Order order) {
+        return OrderView.of(order, serialize(order));
+    }
+
+    /**
+     * Evict an order on every node. Call once the change is committed, or
+     * use {@link #invalidateAfterCommit}.
+     */
+    public void invalidate(String orderId) {
+        evict(orderId);
+        broadcaster.publish(orderId);
+    }
+
+    public void invalidateAll() {
+        evictAll();
+        broadcaster.publishAll();
+    }
+
+    // Evicting before the commit would let a concurrent read cache the old status again.
+    public void invalidateAfterCommit(String orderId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(orderId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(orderId);
+            }
+        });
+    }
+
+    private void evict(String orderId) {
+        views.invalidate(orderId);
+        unknownIds.invalidate(orderId);
+    }
+
+    private void evictAll() {
+        evictAllCount.incrementAndGet();
+        views.invalidateAll();
+        unknownIds.invalidateAll();
+    }
+
+    private byte[] serialize(Order order) {
+        try {
+            return objectMapper.writeValueAsBytes(order);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record OrderView(byte[] body, String etag, long lastModified) {
+
+        static OrderView of(Order order, byte[] body) {
+            // Postgres keeps microseconds; truncate so a reloaded row yields the same tag.
+            LocalDateTime updatedAt = order.getUpdatedAt().truncatedTo(ChronoUnit.MICROS);
+            long micros = ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), updatedAt);
+            return new OrderView(
+                    body,
+                    "\"" + Long.toString(micros, 36) + "\"",
+                    updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+}
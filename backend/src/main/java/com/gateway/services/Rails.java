@@ -0,0 +1,57 @@
+package com.gateway.services;
+
+import com.gateway.models.Payment;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rail a payment is authorized on: "upi", or "card.&lt;network&gt;". Each
+ * rail has its own bulkhead and circuit breaker (PaymentProcessingEngine)
+ * and its own simulator profile (SimulatedAcquirer).
+ */
+final class Rails {
+
+    static final String UPI = "upi";
+
+    static final List<String> ALL;
+
+    static {
+        List<String> all = new ArrayList<>();
+        all.add(UPI);
+        for (CardAnalysis.Network network : CardAnalysis.Network.values()) {
+            all.add("card." + network.code());
+        }
+        ALL = List.copyOf(all);
+    }
+
+    private Rails() {
+    }
+
+    static String of(Payment payment) {
+        if (UPI.equals(payment.getMethod())) {
+            return UPI;
+        }
+        String network = payment.getCardNetwork();
+        return "card." + (network != null ? network : CardAnalysis.Network.UNKNOWN.code());
+    }
+
+    /**
+     * A rail setting, from the most specific key to the least:
+     * {@code <prefix>rails.card.visa.<name>}, {@code <prefix>rails.card.<name>},
+     * then {@code defaultValue} (the {@code <prefix><name>} setting).
+     */
+    static <T> T property(Environment environment, String prefix, String rail, String name,
+                          Class<T> type, T defaultValue) {
+        for (String scope = rail; scope != null; ) {
+            T value = environment.getProperty(prefix + "rails." + scope + "." + name, type);
+            if (value != null) {
+                return value;
+            }
+            int dot = scope.lastIndexOf('.');
+            scope = dot < 0 ? null : scope.substring(0, dot);
+        }
+        return defaultValue;
+    }
+}
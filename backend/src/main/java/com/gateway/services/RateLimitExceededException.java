@@ -0,0 +1,28 @@
+package com.gateway.services;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * 429 raised by {@link MerchantRateLimiter}; carries the Retry-After value.
+ */
+public class RateLimitExceededException extends ApiException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String code, String message, long retryAfterSeconds) {
+        super(code, message, HttpStatus.TOO_MANY_REQUESTS);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    // Thrown on every rejected request of a flood; the stack trace is never read.
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,74 @@
+package com.gateway.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Whether reads on this thread may go to a read replica.
+ *
+ * Everything runs on the primary unless the caller opened a replica scope:
+ * ReplicaReadInterceptor does for GET endpoints, the payment export for its
+ * query. Inside the scope, read-only transactions and plain reads may be
+ * served by a replica (see config.ReadRoutingDataSource); {@link #primary}
+ * switches back for reads that must see the latest writes. Without
+ * replicas configured the scope changes nothing.
+ */
+public final class ReadRouting implements AutoCloseable {
+
+    private static final ThreadLocal<ReadRouting> CURRENT = new ThreadLocal<>();
+
+    private final Duration primaryWindow;
+    private int primaryDepth;
+
+    private ReadRouting(Duration primaryWindow) {
+        this.primaryWindow = primaryWindow;
+    }
+
+    /**
+     * Allow replica reads on this thread until {@link #close}. Rows created
+     * less than {@code primaryWindow} ago are still read from the primary.
+     */
+    public static ReadRouting replica(Duration primaryWindow) {
+        ReadRouting scope = new ReadRouting(primaryWindow);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    public static boolean isReplicaAllowed() {
+        ReadRouting scope = CURRENT.get();
+        return scope != null && scope.primaryDepth == 0;
+    }
+
+    /**
+     * Whether a row created at {@code createdAt} is young enough to still be
+     * changing (payment status, order claims), so a replica may be behind on it.
+     */
+    public static boolean isRecent(Instant createdAt) {
+        ReadRouting scope = CURRENT.get();
+        return scope != null && createdAt.isAfter(Instant.now().minus(scope.primaryWindow));
+    }
+
+    /**
+     * Run {@code read} on the primary even inside a replica scope.
+     */
+    public static <T> T primary(Supplier<T> read) {
+        ReadRouting scope = CURRENT.get();
+        if (scope == null) {
+            return read.get();
+        }
+        scope.primaryDepth++;
+        try {
+            return read.get();
+        } finally {
+            scope.primaryDepth--;
+        }
+    }
+}
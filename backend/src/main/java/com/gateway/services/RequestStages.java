@@ -0,0 +1,96 @@
+package com.gateway.services;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Locale;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Where the time of one API request went, stage by stage (auth, validation,
+ * order_lookup, save, serialize, ...).
+ *
+ * Created per request by ServerTimingFilter and found through the request
+ * attributes, so services record a stage with
+ * {@code long t = RequestStages.start(); ... RequestStages.end("save", t);}
+ * and it is a no-op off the request thread. Repeated stages add up. The
+ * filter turns the stages into timers; the response carries them as a
+ * Server-Timing header.
+ */
+public final class RequestStages {
+
+    public static final String ATTRIBUTE = RequestStages.class.getName();
+    public static final String HEADER = "Server-Timing";
+
+    private static final int MAX_STAGES = 16;
+
+    private final long startedAt = System.nanoTime();
+    private final boolean header;
+    private final String[] names = new String[MAX_STAGES];
+    private final long[] nanos = new long[MAX_STAGES];
+    private int count;
+
+    public RequestStages(boolean header) {
+        this.header = header;
+    }
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void end(String stage, long started) {
+        RequestStages stages = current();
+        if (stages != null) {
+            stages.add(stage, System.nanoTime() - started);
+        }
+    }
+
+    public static RequestStages current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null
+                : (RequestStages) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    public synchronized void add(String stage, long elapsedNanos) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(stage)) {
+                nanos[i] += elapsedNanos;
+                return;
+            }
+        }
+        if (count < MAX_STAGES) {
+            names[count] = stage;
+            nanos[count++] = elapsedNanos;
+        }
+    }
+
+    public synchronized void forEach(ObjLongConsumer<String> action) {
+        for (int i = 0; i < count; i++) {
+            action.accept(names[i], nanos[i]);
+        }
+    }
+
+    /**
+     * Whether responses should carry the Server-Timing header.
+     */
+    public boolean isHeaderEnabled() {
+        return header;
+    }
+
+    /**
+     * {@code auth;dur=0.120, save;dur=3.402, total;dur=4.010} in milliseconds,
+     * total being the time since the request reached the application.
+     */
+    public synchronized String toHeader() {
+        StringBuilder sb = new StringBuilder(32 * (count + 1));
+        for (int i = 0; i < count; i++) {
+            appendMetric(sb, names[i], nanos[i]).append(", ");
+        }
+        return appendMetric(sb, "total", System.nanoTime() - startedAt).toString();
+    }
+
+    private static StringBuilder appendMetric(StringBuilder sb, String name, long elapsedNanos) {
+        return sb.append(name).append(";dur=")
+                .append(String.format(Locale.ROOT, "%.3f", elapsedNanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,285 @@
+package com.gateway.services;
+
+import com.gateway.dto.CreatePaymentRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Velocity rules checked before a payment is created: attempts per card,
+ * VPA, payer IP and merchant within each window (1m, 10m and 1h by
+ * default). The payer IP is the request's customer_ip, never the caller's
+ * address: payments are created server to server, so that is the
+ * merchant's backend or its proxy, shared by all of its payers.
+ *
+ * A payment over a limit is still recorded, as failed with error_code
+ * RISK_VELOCITY_&lt;DIMENSION&gt;_&lt;WINDOW&gt;, e.g.
+ * RISK_VELOCITY_CARD_10M, and never reaches the acquirer.
+ *
+ * Attempts are counted in memory on each node, in a
+ * {@link SlidingWindowCounter} per dimension and window, so a decision
+ * reads nothing from the database. Every attempt counts, declined ones
+ * too: a card being tested stays blocked while it keeps trying. Values are
+ * kept only as 64-bit hashes with a seed drawn at startup.
+ *
+ * Limits come from app.risk.&lt;dimension&gt;.&lt;window&gt;, overridden by
+ * app.risk.merchants.&lt;id&gt;.&lt;dimension&gt;.&lt;window&gt;; 0 or unset
+ * is no limit. A decision waits at most {@code budget} for counters other
+ * requests hold; a counter not reached in time is skipped, so contention
+ * lets a payment through rather than holding it up.
+ */
+@Service
+public class RiskCheckService {
+
+    private static final String PREFIX = "app.risk.";
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.risk.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.risk.windows:1m,10m,1h}")
+    private String[] windowNames;
+
+    @Value("${app.risk.buckets:10}")
+    private int buckets;
+
+    @Value("${app.risk.capacity:65536}")
+    private int capacity;
+
+    @Value("${app.risk.stripes:64}")
+    private int stripes;
+
+    @Value("${app.risk.budget:200us}")
+    private Duration budget;
+
+    private final Map<UUID, int[][]> merchantLimits = new ConcurrentHashMap<>();
+    private final long seed = ThreadLocalRandom.current().nextLong();
+    private final long origin = System.nanoTime();
+
+    private Duration[] windows;
+    // Per dimension and window: the default rules' at startup, others with the first merchant rule using them.
+    private AtomicReferenceArray<SlidingWindowCounter> counters;
+    private Timer decisionTimer;
+    private Counter skippedCounter;
+    private Counter overBudgetCounter;
+
+    @PostConstruct
+    void init() {
+        windows = new Duration[windowNames.length];
+        for (int i = 0; i < windowNames.length; i++) {
+            windowNames[i] = windowNames[i].trim();
+            windows[i] = DurationStyle.detectAndParse(windowNames[i]);
+        }
+        counters = new AtomicReferenceArray<>(DIMENSIONS.length * windows.length);
+        decisionTimer = Timer.builder("gateway.risk.decision.latency")
+                .description("Time to count a payment attempt and decide on it")
+                .register(meterRegistry);
+        skippedCounter = meterRegistry.counter("gateway.risk.skipped");
+        overBudgetCounter = meterRegistry.counter("gateway.risk.over-budget");
+        // Tables for the default rules up front, not in some payment's latency budget.
+        for (Dimension dimension : DIMENSIONS) {
+            for (int window = 0; window < windows.length; window++) {
+                if (environment.getProperty(PREFIX + dimension.code + "." + windowNames[window], Integer.class, 0) > 0) {
+                    counter(dimension, window);
+                }
+            }
+        }
+    }
+
+    /* ================= DECISION ================= */
+
+    /**
+     * Count this attempt against its merchant's rules and decide on it.
+     * Call with a validated request.
+     */
+    public Decision check(CreatePaymentRequest request, UUID merchantId) {
+        if (!enabled) {
+            return Decision.APPROVED;
+        }
+        // Read once per merchant, outside the budget.
+        int[][] limits = limits(merchantId);
+        long started = System.nanoTime();
+        long deadline = started + budget.toNanos();
+        long now = TimeUnit.NANOSECONDS.toMillis(started - origin);
+
+        Decision decision = Decision.APPROVED;
+        for (Dimension dimension : DIMENSIONS) {
+            int[] windowLimits = limits[dimension.ordinal()];
+            if (windowLimits == null) {
+                continue;
+            }
+            long key = key(dimension, request, merchantId);
+            if (key == 0) {
+                continue;
+            }
+            for (int window = 0; window < windows.length; window++) {
+                if (windowLimits[window] <= 0) {
+                    continue;
+                }
+                int count = counter(dimension, window).add(key, now, deadline);
+                if (count < 0) {
+                    skippedCounter.increment();
+                } else if (count > windowLimits[window] && decision.approved()) {
+                    decision = decline(dimension, window);
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        decisionTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (elapsed > budget.toNanos()) {
+            overBudgetCounter.increment();
+        }
+        RequestStages.end("risk", started);
+        return decision;
+    }
+
+    private Decision decline(Dimension dimension, int window) {
+        meterRegistry.counter("gateway.risk.declined",
+                "dimension", dimension.code, "window", windowNames[window]).increment();
+        return Decision.declined(
+                "RISK_VELOCITY_" + dimension.name() + "_" + windowNames[window].toUpperCase(Locale.ROOT),
+                "Too many payment attempts " + dimension.subject);
+    }
+
+    /* ================= RULES ================= */
+
+    // Limits by dimension and window; null for a dimension without any.
+    private int[][] limits(UUID merchantId) {
+        int[][] limits = merchantLimits.get(merchantId);
+        if (limits == null) {
+            limits = merchantLimits.computeIfAbsent(merchantId, id -> {
+                int[][] rules = new int[DIMENSIONS.length][];
+                for (Dimension dimension : DIMENSIONS) {
+                    int[] windowLimits = new int[windows.length];
+                    boolean any = false;
+                    for (int window = 0; window < windows.length; window++) {
+                        String rule = dimension.code + "." + windowNames[window];
+                        windowLimits[window] = environment.getProperty(PREFIX + "merchants." + id + "." + rule,
+                                Integer.class, environment.getProperty(PREFIX + rule, Integer.class, 0));
+                        any |= windowLimits[window] > 0;
+                    }
+                    rules[dimension.ordinal()] = any ? windowLimits : null;
+                }
+                return rules;
+            });
+        }
+        return limits;
+    }
+
+    // Tracks app.risk.<dimension>.capacity keys, else app.risk.capacity.
+    private SlidingWindowCounter counter(Dimension dimension, int window) {
+        int index = dimension.ordinal() * windows.length + window;
+        SlidingWindowCounter counter = counters.get(index);
+        if (counter != null) {
+            return counter;
+        }
+        synchronized (counters) {
+            counter = counters.get(index);
+            if (counter == null) {
+                int keys = environment.getProperty(PREFIX + dimension.code + ".capacity", Integer.class, capacity);
+                counter = new SlidingWindowCounter(windows[window], buckets, keys, stripes);
+                FunctionCounter.builder("gateway.risk.evictions", counter, SlidingWindowCounter::evictions)
+                        .description("Keys forgotten before their window ran out, to make room")
+                        .tags("dimension", dimension.code, "window", windowNames[window])
+                        .register(meterRegistry);
+                counters.set(index, counter);
+            }
+            return counter;
+        }
+    }
+
+    /* ================= KEYS ================= */
+
+    // 0 when the payment has nothing to count for the dimension.
+    private long key(Dimension dimension, CreatePaymentRequest request, UUID merchantId) {
+        return switch (dimension) {
+            case CARD -> "card".equals(request.getMethod()) && request.getCard() != null
+                    ? hash(request.getCard().getNumber(), true) : 0;
+            case VPA -> "upi".equals(request.getMethod()) ? hash(request.getVpa(), false) : 0;
+            case IP -> hash(request.getCustomerIp(), false);
+            case MERCHANT -> nonZero(mix(mix(seed ^ merchantId.getMostSignificantBits())
+                    ^ merchantId.getLeastSignificantBits()));
+        };
+    }
+
+    // Seeded FNV-1a, case-insensitive; card numbers by their digits only.
+    private long hash(String value, boolean digitsOnly) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (digitsOnly && (c < '0' || c > '9')) {
+                continue;
+            }
+            hash = (hash ^ Character.toLowerCase(c)) * 0x100000001b3L;
+        }
+        return nonZero(mix(hash));
+    }
+
+    // MurmurHash3 finalizer: spreads every input bit over the stripe and slot bits.
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * The outcome of the risk checks; a declined payment fails with the
+     * error code and description.
+     */
+    public record Decision(boolean approved, String errorCode, String errorDescription) {
+
+        public static final Decision APPROVED = new Decision(true, null, null);
+
+        static Decision declined(String errorCode, String errorDescription) {
+            return new Decision(false, errorCode, errorDescription);
+        }
+    }
+
+    // Checked in this order; the first limit exceeded is the decline reason.
+    private enum Dimension {
+        CARD("card", "with this card"),
+        VPA("vpa", "with this VPA"),
+        IP("ip", "from this IP address"),
+        MERCHANT("merchant", "for this merchant");
+
+        final String code;
+        final String subject;
+
+        Dimension(String code, String subject) {
+            this.code = code;
+            this.subject = subject;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.gateway.services;
+
+import com.gateway.models.Payment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the acquirer. Each rail answers after a latency drawn
+ * from its distribution, uniform between {@code latency.min} and
+ * {@code latency.max} or lognormal from {@code latency.median} and
+ * {@code latency.p99}, approves {@code success-rate} of payments and fails
+ * {@code error-rate} of calls outright.
+ *
+ * A rail can be browned out ({@link Mode}), from the {@code mode} setting or
+ * at runtime in test mode, to watch its bulkhead and breaker react while the
+ * other rails carry on.
+ *
+ * The answer is a scheduled timer, not a sleeping thread, so thousands of
+ * pending authorizations cost a queue entry each.
+ */
+@Service
+@ConditionalOnProperty(name = "app.acquirer.type", havingValue = "simulator", matchIfMissing = true)
+public class SimulatedAcquirer implements Acquirer {
+
+    private static final String PREFIX = "app.acquirer.simulator.";
+
+    // z-score of the 99th percentile, to derive a lognormal's sigma from its p99.
+    private static final double Z_99 = 2.3263;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.payment.upi.success-rate}")
+    private double upiSuccessRate;
+
+    @Value("${app.payment.card.success-rate}")
+    private double cardSuccessRate;
+
+    @Value("${app.payment.processing.delay.min}")
+    private long delayMin;
+
+    @Value("${app.payment.processing.delay.max}")
+    private long delayMax;
+
+    @Value("${app.test.mode:false}")
+    private boolean testMode;
+
+    @Value("${app.test.payment.success:true}")
+    private boolean testPaymentSuccess;
+
+    @Value("${app.test.processing.delay:1000}")
+    private long testProcessingDelay;
+
+    @Value("${app.acquirer.simulator.latency.distribution:uniform}")
+    private String distribution;
+
+    @Value("${app.acquirer.simulator.error-rate:0}")
+    private double errorRate;
+
+    @Value("${app.acquirer.simulator.mode:normal}")
+    private String mode;
+
+    @Value("${app.acquirer.simulator.brownout.slowdown:10}")
+    private double brownoutSlowdown;
+
+    @Value("${app.acquirer.simulator.brownout.error-rate:0.5}")
+    private double brownoutErrorRate;
+
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, Mode> modes = new ConcurrentHashMap<>();
+
+    private ScheduledThreadPoolExecutor timer;
+
+    @PostConstruct
+    void start() {
+        timer = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("acquirer-sim-"));
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void stop() {
+        timer.shutdownNow();
+    }
+
+    /* ================= AUTHORIZATION ================= */
+
+    @Override
+    public CompletableFuture<Authorization> authorize(Payment payment) {
+        String rail = Rails.of(payment);
+        Profile profile = profiles.computeIfAbsent(rail, this::profile);
+        Mode railMode = getMode(rail);
+        if (railMode == Mode.DOWN) {
+            return CompletableFuture.failedFuture(new DownstreamException(rail + " is down (simulated)"));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = testMode ? testProcessingDelay : profile.latency(random);
+        double failing = profile.errorRate;
+        if (railMode == Mode.SLOW) {
+            latency = Math.round(latency * brownoutSlowdown);
+        } else if (railMode == Mode.FLAKY) {
+            failing = Math.max(failing, brownoutErrorRate);
+        }
+        boolean error = random.nextDouble() < failing;
+        boolean approved = testMode ? testPaymentSuccess : random.nextDouble() < profile.successRate;
+
+        CompletableFuture<Authorization> answer = new CompletableFuture<>();
+        try {
+            timer.schedule(() -> {
+                if (error) {
+                    answer.completeExceptionally(new DownstreamException(rail + " returned an error (simulated)"));
+                } else {
+                    answer.complete(approved ? Authorization.APPROVED
+                            : Authorization.declined("PAYMENT_FAILED", "Payment processing failed"));
+                }
+            }, latency, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Only during shutdown.
+            answer.completeExceptionally(e);
+        }
+        return answer;
+    }
+
+    /* ================= BROWNOUTS ================= */
+
+    public Mode getMode(String rail) {
+        return modes.computeIfAbsent(rail, r -> Mode.parse(
+                Rails.property(environment, PREFIX, r, "mode", String.class, mode)));
+    }
+
+    public void setMode(String rail, Mode railMode) {
+        if (!Rails.ALL.contains(rail)) {
+            throw new ApiException("BAD_REQUEST_ERROR", "rail must be one of " + String.join(", ", Rails.ALL));
+        }
+        modes.put(rail, railMode);
+    }
+
+    private Profile profile(String rail) {
+        double successRate = Rails.property(environment, PREFIX, rail, "success-rate", Double.class,
+                Rails.UPI.equals(rail) ? upiSuccessRate : cardSuccessRate);
+        double railErrorRate = Rails.property(environment, PREFIX, rail, "error-rate", Double.class, errorRate);
+        String railDistribution = Rails.property(environment, PREFIX, rail, "latency.distribution", String.class,
+                distribution);
+        if ("lognormal".equalsIgnoreCase(railDistribution)) {
+            Duration median = Rails.property(environment, PREFIX, rail, "latency.median", Duration.class,
+                    Duration.ofMillis((delayMin + delayMax) / 2));
+            Duration p99 = Rails.property(environment, PREFIX, rail, "latency.p99", Duration.class,
+                    Duration.ofMillis(delayMax));
+            double sigma = Math.log((double) Math.max(p99.toMillis(), median.toMillis() + 1)
+                    / Math.max(median.toMillis(), 1)) / Z_99;
+            return new Profile(successRate, railErrorRate, 0, 0, median.toMillis(), sigma);
+        }
+        Duration min = Rails.property(environment, PREFIX, rail, "latency.min", Duration.class,
+                Duration.ofMillis(delayMin));
+        Duration max = Rails.property(environment, PREFIX, rail, "latency.max", Duration.class,
+                Duration.ofMillis(delayMax));
+        return new Profile(successRate, railErrorRate, min.toMillis(), max.toMillis(), 0, 0);
+    }
+
+    /**
+     * Brownout modes: {@code SLOW} multiplies latency by
+     * {@code brownout.slowdown}, {@code FLAKY} fails
+     * {@code brownout.error-rate} of calls, {@code DOWN} fails every call
+     * at once, like a refused connection.
+     */
+    public enum Mode {
+        NORMAL, SLOW, FLAKY, DOWN;
+
+        public static Mode parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    // Uniform between min and max, or lognormal when median > 0.
+    private record Profile(double successRate, double errorRate, long min, long max, long median, double sigma) {
+
+        long latency(ThreadLocalRandom random) {
+            if (median > 0) {
+                return Math.round(median * Math.exp(sigma * random.nextGaussian()));
+            }
+            return max <= min ? min : random.nextLong(min, max + 1);
+        }
+    }
+}
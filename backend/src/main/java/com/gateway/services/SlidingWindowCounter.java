@@ -0,0 +1,137 @@
+package com.gateway.services;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Events per key over a sliding window, in a fixed amount of memory.
+ *
+ * The window is split into {@code buckets} slices and a key's count is the
+ * sum of its last {@code buckets} slices, so the window slides in steps of
+ * window / buckets.
+ *
+ * Keys are 64-bit hashes (never 0) held in {@code capacity} slots, split
+ * into stripes with a lock each: the high bits pick the stripe, the low
+ * bits a slot, and a key may sit in any of the next {@link #PROBES} slots.
+ * When none of them is the key's, free or expired, the key takes the one
+ * counted longest ago and that key's count is lost ({@link #evictions}).
+ * A key counted often keeps its slot, so what is forgotten under pressure
+ * are rare keys, far from any limit. Counts are exact otherwise.
+ */
+final class SlidingWindowCounter {
+
+    static final int PROBES = 8;
+
+    private final int buckets;
+    private final long bucketMillis;
+    private final Stripe[] stripes;
+    private final int slotMask;
+    private final LongAdder evictions = new LongAdder();
+
+    SlidingWindowCounter(Duration window, int buckets, int capacity, int stripes) {
+        this.buckets = Math.max(1, buckets);
+        this.bucketMillis = Math.max(1, window.toMillis() / this.buckets);
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes));
+        int slots = Math.max(PROBES, Integer.highestOneBit(Math.max(1, capacity / stripeCount)));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(slots, this.buckets);
+        }
+        this.slotMask = slots - 1;
+    }
+
+    /**
+     * Count one event of {@code key} at {@code nowMillis} (a monotonic clock)
+     * and return the key's count over the window, this one included. Returns
+     * -1, counting nothing, when the key's stripe stays locked until
+     * {@code deadlineNanos} ({@link System#nanoTime}).
+     */
+    int add(long key, long nowMillis, long deadlineNanos) {
+        Stripe stripe = stripes[(int) (key >>> 32) & (stripes.length - 1)];
+        try {
+            if (!stripe.lock.tryLock() && !stripe.lock.tryLock(
+                    Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return -1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        try {
+            return stripe.add(key, nowMillis / bucketMillis);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    private final class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final long[] keys;
+        // Slice number of each slot's last event.
+        final long[] latest;
+        // buckets counts per slot, indexed by slice number % buckets.
+        final int[] counts;
+
+        Stripe(int slots, int buckets) {
+            keys = new long[slots];
+            latest = new long[slots];
+            counts = new int[slots * buckets];
+        }
+
+        int add(long key, long bucket) {
+            int home = (int) key & slotMask;
+            int slot = -1;
+            int victim = home;
+            for (int i = 0; i < PROBES; i++) {
+                int s = (home + i) & slotMask;
+                if (keys[s] == key) {
+                    slot = s;
+                    break;
+                }
+                // The first free slot, else the one counted longest ago.
+                if (keys[victim] != 0 && (keys[s] == 0 || latest[s] < latest[victim])) {
+                    victim = s;
+                }
+            }
+
+            int base;
+            if (slot < 0) {
+                slot = victim;
+                if (keys[slot] != 0 && bucket - latest[slot] < buckets) {
+                    evictions.increment();
+                }
+                keys[slot] = key;
+                latest[slot] = bucket;
+                base = slot * buckets;
+                Arrays.fill(counts, base, base + buckets, 0);
+            } else {
+                base = slot * buckets;
+                if (bucket - latest[slot] >= buckets) {
+                    Arrays.fill(counts, base, base + buckets, 0);
+                } else {
+                    // Slices passed since the last event start again from zero.
+                    for (long b = latest[slot] + 1; b <= bucket; b++) {
+                        counts[base + (int) (b % buckets)] = 0;
+                    }
+                }
+                // A caller that read the clock before an earlier one took the lock counts in the newer slice.
+                latest[slot] = Math.max(latest[slot], bucket);
+            }
+
+            counts[base + (int) (latest[slot] % buckets)]++;
+            int total = 0;
+            for (int i = 0; i < buckets; i++) {
+                total += counts[base + i];
+            }
+            return total;
+        }
+    }
+}
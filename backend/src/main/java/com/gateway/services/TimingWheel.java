@@ -0,0 +1,96 @@
+package com.gateway.services;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: {@code LEVELS} wheels of {@code SLOTS} slots,
+ * each slot of a level spanning a whole turn of the level below (1 tick,
+ * 64 ticks, 64^2 ticks, ...). Scheduling picks the level from the distance
+ * to the deadline and appends to one slot, O(1) whatever the number of
+ * timers. Advancing fires the level 0 slot of each tick; when a level wraps,
+ * the next slot of the level above is cascaded down, so a timer is moved at
+ * most LEVELS - 1 times before it fires. Deadlines beyond the top level wait
+ * in its farthest slot and are placed again when it cascades.
+ *
+ * Not thread-safe: OrderExpiryScheduler owns it from one thread.
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    // Ticks covered before the top level overflows: 64^4, about 194 days at one second.
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    private final long tickMillis;
+    private final ArrayDeque<Timer<T>>[][] slots;
+    // Next tick to fire; every earlier tick has fired.
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+        this.slots = (ArrayDeque<Timer<T>>[][]) new ArrayDeque<?>[LEVELS][SLOTS];
+        for (ArrayDeque<Timer<T>>[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new ArrayDeque<>();
+            }
+        }
+    }
+
+    /**
+     * Fire {@code item} at the first tick at or after {@code deadlineMillis};
+     * a deadline already past fires at the next {@link #advance}.
+     */
+    void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(-Math.floorDiv(-deadlineMillis, tickMillis), currentTick);
+        place(new Timer<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Fire, in deadline order to within a tick, everything due at {@code nowMillis}.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick <= target) {
+            // Level L wraps when the low L*BITS bits of the tick are zero.
+            for (int level = 1; level < LEVELS
+                    && (currentTick & ((1L << (BITS * level)) - 1)) == 0; level++) {
+                ArrayDeque<Timer<T>> slot = slots[level][(int) (currentTick >>> (BITS * level)) & MASK];
+                for (int n = slot.size(); n > 0; n--) {
+                    place(slot.poll());
+                }
+            }
+            ArrayDeque<Timer<T>> due = slots[0][(int) currentTick & MASK];
+            Timer<T> timer;
+            while ((timer = due.poll()) != null) {
+                size--;
+                expired.accept(timer.item);
+            }
+            currentTick++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(Timer<T> timer) {
+        long tick = timer.tick;
+        long delta = tick - currentTick;
+        if (delta >= SPAN) {
+            tick = currentTick + SPAN - 1;
+            delta = SPAN - 1;
+        }
+        int level = delta < SLOTS ? 0 : (63 - Long.numberOfLeadingZeros(delta)) / BITS;
+        slots[level][(int) (tick >>> (BITS * level)) & MASK].add(timer);
+    }
+
+    private record Timer<T>(T item, long tick) {
+    }
+}
@@ -4,105 +4,165 @@ import com.gateway.dto.CreatePaymentRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.YearMonth;
-import java.util.regex.Pattern;
 
 @Service
 public class ValidationService {
 
-    private static final Pattern VPA_PATTERN =
-            Pattern.compile("^[a-zA-Z0-9._-]+@[a-zA-Z0-9]+$");
+    private static final int MIN_PAN_LENGTH = 13;
+    private static final int MAX_PAN_LENGTH = 19;
+    private static final int AMEX_PAN_LENGTH = 15;
+
+    // Current month as year * 12 + (month - 1), refreshed once a minute.
+    private volatile int currentMonthIndex;
+    private volatile long currentMonthCheckedAt;
 
     /* ---------- UPI ---------- */
 
+    /**
+     * Same rule as ^[a-zA-Z0-9._-]+@[a-zA-Z0-9]+$, checked in one scan.
+     */
     public boolean validateVPA(String vpa) {
-        if (vpa == null || vpa.trim().isEmpty()) return false;
-        return VPA_PATTERN.matcher(vpa).matches();
+        if (vpa == null) return false;
+
+        int len = vpa.length();
+        int at = -1;
+        for (int i = 0; i < len; i++) {
+            char c = vpa.charAt(i);
+            if (c == '@') {
+                if (at >= 0) return false;
+                at = i;
+            } else if (at < 0) {
+                if (!isAsciiAlphanumeric(c) && c != '.' && c != '_' && c != '-') return false;
+            } else if (!isAsciiAlphanumeric(c)) {
+                return false;
+            }
+        }
+        return at > 0 && at < len - 1;
     }
 
     // ✅ REQUIRED: used by PaymentController & PaymentService
     public boolean isValidVpa(String vpa) {
-        return validateVPA(vpa);
+        long started = RequestStages.start();
+        boolean valid = validateVPA(vpa);
+        RequestStages.end("validation", started);
+        return valid;
     }
 
     /* ---------- CARD ---------- */
 
     public boolean isValidCard(CreatePaymentRequest.CardDetails card) {
-        if (card == null) return false;
-        return validateCardNumber(card.getNumber())
-                && validateCardExpiry(
-                        String.valueOf(card.getExpiryMonth()),
-                        String.valueOf(card.getExpiryYear())
-                );
+        return analyzeCard(card).isValid();
     }
 
-public boolean validateCardNumber(String cardNumber) {
-    if (cardNumber == null) return false;
-
-    cardNumber = cardNumber.replaceAll("\\s+", "");
-    if (!cardNumber.matches("\\d{16}")) return false;
+    /**
+     * Scan the card number once: whitespace is skipped, any other non-digit
+     * makes the card invalid. Accepts 13-19 digit PANs (exactly 15 for Amex).
+     */
+    public CardAnalysis analyzeCard(CreatePaymentRequest.CardDetails card) {
+        if (card == null) return CardAnalysis.INVALID;
+        long started = RequestStages.start();
+        CardAnalysis analysis = analyze(card.getNumber(), card.getExpiryMonth(), card.getExpiryYear());
+        RequestStages.end("validation", started);
+        return analysis;
+    }
 
-    int sum = 0;
-    boolean alternate = false;
+    public boolean validateCardNumber(String cardNumber) {
+        return analyze(cardNumber, null, null).isValidNumber();
+    }
 
-    for (int i = cardNumber.length() - 1; i >= 0; i--) {
-        int n = cardNumber.charAt(i) - '0';
-        if (alternate) {
-            n *= 2;
-            if (n > 9) n -= 9;
-        }
-        sum += n;
-        alternate = !alternate;
+    public boolean validateCardExpiry(Integer month, Integer year) {
+        if (month == null || year == null || month < 1 || month > 12) return false;
+        int y = year < 100 ? year + 2000 : year;
+        return y * 12 + (month - 1) >= currentMonthIndex();
     }
 
-    return sum % 10 == 0;
-}
+    public String detectCardNetwork(String cardNumber) {
+        return analyze(cardNumber, null, null).getNetwork().code();
+    }
 
+    public String getCardLast4(String cardNumber) {
+        return analyze(cardNumber, null, null).getLast4();
+    }
 
-    public boolean validateCardExpiry(String month, String year) {
-        try {
-            int m = Integer.parseInt(month);
-            int y = Integer.parseInt(year);
+    private CardAnalysis analyze(String number, Integer expiryMonth, Integer expiryYear) {
+        boolean expiryValid = validateCardExpiry(expiryMonth, expiryYear);
+        if (number == null) {
+            return new CardAnalysis(false, false, CardAnalysis.Network.UNKNOWN, -1, expiryValid);
+        }
 
-            YearMonth expiry = YearMonth.of(y, m);
-            return !expiry.isBefore(YearMonth.now());
-        } catch (Exception e) {
-            return false;
+        int digits = 0;
+        int prefix = 0;      // first 6 digits
+        int last4 = 0;
+        int sumEvenDoubled = 0;  // Luhn sum if digits at even positions are doubled
+        int sumOddDoubled = 0;   // Luhn sum if digits at odd positions are doubled
+        boolean wellFormed = true;
+
+        for (int i = 0, len = number.length(); i < len; i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                int d = c - '0';
+                int doubled = d * 2 > 9 ? d * 2 - 9 : d * 2;
+                if ((digits & 1) == 0) {
+                    sumEvenDoubled += doubled;
+                    sumOddDoubled += d;
+                } else {
+                    sumEvenDoubled += d;
+                    sumOddDoubled += doubled;
+                }
+                if (digits < 6) prefix = prefix * 10 + d;
+                last4 = (last4 * 10 + d) % 10000;
+                digits++;
+            } else if (!Character.isWhitespace(c)) {
+                wellFormed = false;
+            }
         }
+
+        // The rightmost digit is never doubled, so with an even count the
+        // doubled digits sit at even positions from the left.
+        int luhnSum = (digits & 1) == 0 ? sumEvenDoubled : sumOddDoubled;
+        CardAnalysis.Network network = detectNetwork(prefix, Math.min(digits, 6));
+
+        boolean validLength = wellFormed
+                && digits >= MIN_PAN_LENGTH && digits <= MAX_PAN_LENGTH
+                && (network != CardAnalysis.Network.AMEX || digits == AMEX_PAN_LENGTH);
+
+        return new CardAnalysis(
+                validLength,
+                wellFormed && digits > 0 && luhnSum % 10 == 0,
+                network,
+                digits >= 4 ? last4 : -1,
+                expiryValid);
     }
 
-    public String detectCardNetwork(String cardNumber) {
-        if (cardNumber == null) return "unknown";
-        String c = cardNumber.replaceAll("[\\s-]", "");
+    private static CardAnalysis.Network detectNetwork(int prefix, int prefixDigits) {
+        if (prefixDigits == 0) return CardAnalysis.Network.UNKNOWN;
 
-        if (c.startsWith("4")) return "visa";
-        if (c.matches("^5[1-5].*")) return "mastercard";
-        if (c.matches("^3[47].*")) return "amex";
-        if (c.matches("^(60|65|8[1-9]).*")) return "rupay";
+        int first = prefix;
+        for (int i = 1; i < prefixDigits; i++) first /= 10;
+        if (first == 4) return CardAnalysis.Network.VISA;
+        if (prefixDigits < 2) return CardAnalysis.Network.UNKNOWN;
 
-        return "unknown";
+        int firstTwo = prefix;
+        for (int i = 2; i < prefixDigits; i++) firstTwo /= 10;
+        if (firstTwo >= 51 && firstTwo <= 55) return CardAnalysis.Network.MASTERCARD;
+        if (firstTwo == 34 || firstTwo == 37) return CardAnalysis.Network.AMEX;
+        if (firstTwo == 60 || firstTwo == 65 || (firstTwo >= 81 && firstTwo <= 89)) {
+            return CardAnalysis.Network.RUPAY;
+        }
+        return CardAnalysis.Network.UNKNOWN;
     }
 
-    public String getCardLast4(String cardNumber) {
-        if (cardNumber == null) return "0000";
-        String c = cardNumber.replaceAll("[\\s-]", "");
-        return c.length() >= 4 ? c.substring(c.length() - 4) : "0000";
+    private int currentMonthIndex() {
+        long now = System.currentTimeMillis();
+        if (now - currentMonthCheckedAt > 60_000L) {
+            YearMonth ym = YearMonth.now();
+            currentMonthIndex = ym.getYear() * 12 + (ym.getMonthValue() - 1);
+            currentMonthCheckedAt = now;
+        }
+        return currentMonthIndex;
     }
 
-    /* ---------- LUHN ---------- */
-
-    private boolean luhnCheck(String number) {
-        int sum = 0;
-        boolean alt = false;
-
-        for (int i = number.length() - 1; i >= 0; i--) {
-            int n = number.charAt(i) - '0';
-            if (alt) {
-                n *= 2;
-                if (n > 9) n -= 9;
-            }
-            sum += n;
-            alt = !alt;
-        }
-        return sum % 10 == 0;
+    private static boolean isAsciiAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
     }
 }
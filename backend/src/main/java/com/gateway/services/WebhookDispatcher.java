@@ -0,0 +1,356 @@
+package com.gateway.services;
+
+import com.gateway.models.WebhookEvent;
+import com.gateway.repositories.WebhookEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers outbox rows from webhook_events.
+ *
+ * Each poll leases a batch of due events (SKIP LOCKED, so replicas never
+ * share a row) and hands them to per-merchant lanes. A lane sends at most
+ * {@code per-merchant-concurrency} requests at once over one shared async
+ * HttpClient and parks the rest, so a slow endpoint only delays its own
+ * merchant. Merchants whose lane is full are left out of the next claim.
+ *
+ * Failures are retried with exponential backoff and jitter until
+ * {@code max-attempts}, then the event is dead-lettered. A node that dies
+ * mid-delivery loses nothing: the lease runs out and the row is due again.
+ */
+@Service
+public class WebhookDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private WebhookEventRepository eventRepository;
+
+    @Autowired
+    private WebhookService webhookService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.webhooks.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.webhooks.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.webhooks.max-in-flight:256}")
+    private int maxInFlight;
+
+    @Value("${app.webhooks.per-merchant-concurrency:4}")
+    private int perMerchantConcurrency;
+
+    @Value("${app.webhooks.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${app.webhooks.request-timeout:10s}")
+    private Duration requestTimeout;
+
+    @Value("${app.webhooks.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.webhooks.initial-backoff:5s}")
+    private Duration initialBackoff;
+
+    @Value("${app.webhooks.max-backoff:1h}")
+    private Duration maxBackoff;
+
+    @Value("${app.webhooks.lease:2m}")
+    private Duration lease;
+
+    @Value("${app.webhooks.retention:7d}")
+    private Duration retention;
+
+    private HttpClient client;
+    private ExecutorService httpExecutor;
+    private ExecutorService resultExecutor;
+
+    private final Map<UUID, Lane> lanes = new ConcurrentHashMap<>();
+    // Claimed and not yet settled: sending or parked in a lane.
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicInteger sending = new AtomicInteger();
+    private volatile boolean running = true;
+
+    private volatile long backlog;
+    private volatile double oldestAgeSeconds;
+
+    private Counter deliveredCounter;
+    private Counter retryCounter;
+    private Counter deadCounter;
+    private Timer deliveryLatency;
+
+    @PostConstruct
+    void start() {
+        httpExecutor = Executors.newFixedThreadPool(2, new CustomizableThreadFactory("webhook-http-"));
+        // Outcome bookkeeping does JDBC; keep it off the HttpClient's own threads.
+        resultExecutor = Executors.newFixedThreadPool(4, new CustomizableThreadFactory("webhook-result-"));
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(httpExecutor)
+                .build();
+
+        deliveredCounter = meterRegistry.counter("gateway.webhooks.attempts", "outcome", "delivered");
+        retryCounter = meterRegistry.counter("gateway.webhooks.attempts", "outcome", "retry");
+        deadCounter = meterRegistry.counter("gateway.webhooks.attempts", "outcome", "dead");
+        deliveryLatency = Timer.builder("gateway.webhooks.delivery.latency")
+                .description("Time from event creation to successful delivery, retries included")
+                .register(meterRegistry);
+        Gauge.builder("gateway.webhooks.backlog", this, d -> d.backlog)
+                .description("Pending webhook events across all nodes")
+                .register(meterRegistry);
+        Gauge.builder("gateway.webhooks.backlog.oldest.age", this, d -> d.oldestAgeSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("gateway.webhooks.in-flight", sending, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        // Unsettled events keep their lease and are retried after it expires.
+        resultExecutor.shutdown();
+        resultExecutor.awaitTermination(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        httpExecutor.shutdownNow();
+    }
+
+    /* ================= CLAIMING ================= */
+
+    @Scheduled(fixedDelayString = "${app.webhooks.poll-interval-ms:500}")
+    public void poll() {
+        if (!enabled || !running) {
+            return;
+        }
+        try {
+            int limit;
+            while ((limit = Math.min(batchSize, maxInFlight - claimed.get())) > 0) {
+                LocalDateTime now = LocalDateTime.now();
+                List<WebhookEvent> events = eventRepository.claimDue(now, now.plus(lease), busyMerchants(),
+                        perMerchantConcurrency, limit * 4, limit);
+                for (WebhookEvent event : events) {
+                    claimed.incrementAndGet();
+                    lanes.computeIfAbsent(event.getMerchantId(), Lane::new).offer(event);
+                }
+                if (events.size() < limit) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to claim webhook events", e);
+        }
+    }
+
+    private String busyMerchants() {
+        return lanes.values().stream()
+                .filter(Lane::isFull)
+                .map(lane -> lane.merchantId.toString())
+                .collect(Collectors.joining(","));
+    }
+
+    /* ================= DELIVERY ================= */
+
+    private void send(WebhookEvent event, Lane lane) {
+        Optional<WebhookService.Endpoint> endpoint = webhookService.endpoint(event.getMerchantId());
+        HttpRequest request;
+        try {
+            if (endpoint.isEmpty()) {
+                throw new IllegalArgumentException("Merchant has no webhook URL");
+            }
+            long timestamp = Instant.now().getEpochSecond();
+            request = HttpRequest.newBuilder(URI.create(endpoint.get().url()))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .header("X-Webhook-Id", event.getId())
+                    .header("X-Webhook-Event", event.getEventType())
+                    .header(WebhookService.SIGNATURE_HEADER,
+                            WebhookService.sign(endpoint.get().secret(), timestamp, event.getPayload()))
+                    .POST(HttpRequest.BodyPublishers.ofString(event.getPayload()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            // Nothing to retry against: dead-letter straight away.
+            resultExecutor.execute(() -> settle(event, lane, null, e, 0L, true));
+            return;
+        }
+
+        sending.incrementAndGet();
+        long started = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenCompleteAsync((response, error) -> {
+                    sending.decrementAndGet();
+                    settle(event, lane, response, error, System.nanoTime() - started, false);
+                }, resultExecutor);
+    }
+
+    private void settle(WebhookEvent event, Lane lane, HttpResponse<?> response, Throwable error,
+                        long elapsedNanos, boolean permanent) {
+        try {
+            Integer code = response != null ? response.statusCode() : null;
+            String outcome = code == null ? "error" : code / 100 == 2 ? "success" : "http_" + code / 100 + "xx";
+            if (!permanent) {
+                meterRegistry.timer("gateway.webhooks.request.duration", "outcome", outcome)
+                        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+
+            int attempts = event.getAttempts() + 1;
+            LocalDateTime now = LocalDateTime.now();
+            if (code != null && code / 100 == 2) {
+                eventRepository.markDelivered(event.getId(), attempts, code, now);
+                deliveredCounter.increment();
+                deliveryLatency.record(Duration.between(event.getCreatedAt(), now));
+                return;
+            }
+
+            String reason = code != null ? "HTTP " + code : describe(error);
+            if (permanent || attempts >= maxAttempts) {
+                eventRepository.markFailed(event.getId(), WebhookEvent.DEAD, attempts, now, code, reason);
+                deadCounter.increment();
+                log.warn("Webhook {} for merchant {} dead-lettered after {} attempts: {}",
+                        event.getId(), event.getMerchantId(), attempts, reason);
+            } else {
+                eventRepository.markFailed(event.getId(), WebhookEvent.PENDING, attempts,
+                        now.plus(backoff(attempts)), code, reason);
+                retryCounter.increment();
+            }
+        } catch (Exception e) {
+            log.error("Failed to record webhook outcome for {}", event.getId(), e);
+        } finally {
+            claimed.decrementAndGet();
+            lane.done();
+        }
+    }
+
+    /**
+     * initial * 2^(attempts-1), capped, with equal jitter: half fixed, half
+     * random, so a burst of failures does not come back in lockstep.
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts - 1, 30);
+        millis = Math.min(millis, maxBackoff.toMillis());
+        long half = millis / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        if (cause == null) {
+            return "Unknown error";
+        }
+        String message = cause.getClass().getSimpleName()
+                + (cause.getMessage() != null ? ": " + cause.getMessage() : "");
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    /* ================= BACKLOG AND RETENTION ================= */
+
+    @Scheduled(fixedDelayString = "${app.webhooks.backlog-refresh-ms:10000}")
+    public void refreshBacklog() {
+        try {
+            WebhookEventRepository.BacklogView view = eventRepository.backlog();
+            backlog = view.getBacklog();
+            oldestAgeSeconds = view.getOldest() == null ? 0
+                    : Duration.between(view.getOldest(), LocalDateTime.now()).toMillis() / 1000.0;
+        } catch (Exception e) {
+            log.warn("Failed to refresh webhook backlog: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhooks.cleanup-interval-ms:3600000}")
+    public void deleteFinished() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int deleted;
+        int total = 0;
+        do {
+            deleted = eventRepository.deleteFinishedBefore(before, CLEANUP_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == CLEANUP_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Deleted {} delivered or dead webhook events", total);
+        }
+    }
+
+    /* ================= LANES ================= */
+
+    /**
+     * One merchant's share of the dispatcher: a concurrency limit plus the
+     * claimed events waiting for a slot. Kept for the life of the process.
+     */
+    private final class Lane {
+
+        private final UUID merchantId;
+        private final ArrayDeque<WebhookEvent> waiting = new ArrayDeque<>();
+        private int active;
+
+        Lane(UUID merchantId) {
+            this.merchantId = merchantId;
+        }
+
+        synchronized boolean isFull() {
+            return active + waiting.size() >= perMerchantConcurrency;
+        }
+
+        void offer(WebhookEvent event) {
+            synchronized (this) {
+                if (active >= perMerchantConcurrency) {
+                    waiting.add(event);
+                    return;
+                }
+                active++;
+            }
+            send(event, this);
+        }
+
+        void done() {
+            WebhookEvent next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            send(next, this);
+        }
+    }
+}
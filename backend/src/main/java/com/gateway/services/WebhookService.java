@@ -0,0 +1,158 @@
+package com.gateway.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gateway.dto.PaymentStatus;
+import com.gateway.models.Merchant;
+import com.gateway.models.Payment;
+import com.gateway.models.WebhookEvent;
+import com.gateway.repositories.MerchantRepository;
+import com.gateway.repositories.WebhookEventRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Writes webhook events to the outbox and resolves where they go.
+ *
+ * Events are recorded inside the caller's transaction, so a status change
+ * and its notification commit or roll back together; {@link WebhookDispatcher}
+ * delivers them afterwards. Merchants without a webhook URL get no rows.
+ */
+@Service
+public class WebhookService {
+
+    public static final String SIGNATURE_HEADER = "X-Webhook-Signature";
+
+    private static final String HMAC = "HmacSHA256";
+
+    @Autowired
+    private WebhookEventRepository eventRepository;
+
+    @Autowired
+    private MerchantRepository merchantRepository;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.webhooks.endpoint-cache.ttl:60s}")
+    private Duration endpointCacheTtl;
+
+    private Cache<UUID, Optional<Endpoint>> endpoints;
+
+    @PostConstruct
+    void init() {
+        endpoints = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(endpointCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, endpoints, "webhooks.endpoints");
+    }
+
+    /**
+     * Queue "payment.success" / "payment.failed" for a payment that just
+     * reached {@code status}. Must run in the transaction making that change.
+     */
+    public void recordPaymentEvent(Payment payment, PaymentStatus status) {
+        if (endpoint(payment.getMerchantId()).isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        String eventType = "payment." + status.getStatus();
+
+        WebhookEvent event = new WebhookEvent();
+        event.setId(idGenerator.newEventId());
+        event.setMerchantId(payment.getMerchantId());
+        event.setEventType(eventType);
+        event.setResourceId(payment.getId());
+        event.setPayload(paymentPayload(event.getId(), eventType, payment, status, now));
+        event.setNextAttemptAt(now);
+        event.setCreatedAt(now);
+        eventRepository.save(event);
+    }
+
+    private String paymentPayload(String eventId, String eventType, Payment payment,
+                                  PaymentStatus status, LocalDateTime now) {
+        // The request thread may still be rendering the same Payment: copy, never mutate.
+        ObjectNode data = objectMapper.valueToTree(payment);
+        data.put("status", status.getStatus());
+        data.put("error_code", status.getErrorCode());
+        data.put("error_description", status.getErrorDescription());
+        data.set("updated_at", objectMapper.valueToTree(status.getUpdatedAt()));
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", eventId);
+        root.put("event", eventType);
+        root.set("created_at", objectMapper.valueToTree(now));
+        root.putObject("data").set("payment", data);
+        try {
+            return objectMapper.writeValueAsString(root);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ================= ENDPOINTS ================= */
+
+    /**
+     * Where to deliver a merchant's events, or empty when it has no webhook URL.
+     */
+    public Optional<Endpoint> endpoint(UUID merchantId) {
+        return endpoints.get(merchantId, id -> merchantRepository.findById(id).flatMap(Endpoint::of));
+    }
+
+    public void invalidate(UUID merchantId) {
+        endpoints.invalidate(merchantId);
+    }
+
+    /**
+     * Signature header value: {@code t=<unix seconds>,v1=<hex HMAC-SHA256 of "t.body">}.
+     * Receivers recompute it with their API secret and reject stale timestamps.
+     */
+    public static String sign(String secret, long timestamp, String body) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC));
+            mac.update(Long.toString(timestamp).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '.');
+            byte[] digest = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+            return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Endpoint(String url, String secret) {
+
+        static Optional<Endpoint> of(Merchant merchant) {
+            String url = merchant.getWebhookUrl();
+            if (url == null || url.isBlank() || Boolean.FALSE.equals(merchant.getIsActive())) {
+                return Optional.empty();
+            }
+            return Optional.of(new Endpoint(url.trim(), merchant.getApiSecret()));
+        }
+    }
+}
@@ -11,41 +11,112 @@ CREATE TABLE IF NOT EXISTS merchants (
     updated_at TIMESTAMP NOT NULL
 );
 
+-- Orders and payments are range-partitioned by created_at (see PartitionMaintenance,
+-- which creates the partitions). The partition key has to be part of the primary key,
+-- and payments.order_id cannot reference orders(id) alone, so that link is checked by
+-- PaymentService instead of a foreign key.
+
 -- Orders Table
 CREATE TABLE IF NOT EXISTS orders (
-    id VARCHAR(64) PRIMARY KEY,
+    id VARCHAR(64) NOT NULL,
     merchant_id UUID NOT NULL,
     amount INTEGER NOT NULL CHECK (amount >= 100),
     currency VARCHAR(3) NOT NULL DEFAULT 'INR',
     receipt VARCHAR(255),
     notes JSONB,
     status VARCHAR(20) NOT NULL DEFAULT 'created',
+    version BIGINT NOT NULL DEFAULT 0,
+    expires_at TIMESTAMP,
     created_at TIMESTAMP NOT NULL,
     updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at),
     FOREIGN KEY (merchant_id) REFERENCES merchants(id)
-);
+) PARTITION BY RANGE (created_at);
 
 -- Payments Table
 CREATE TABLE IF NOT EXISTS payments (
-    id VARCHAR(64) PRIMARY KEY,
+    id VARCHAR(64) NOT NULL,
     order_id VARCHAR(64) NOT NULL,
     merchant_id UUID NOT NULL,
     amount INTEGER NOT NULL,
     currency VARCHAR(3) NOT NULL DEFAULT 'INR',
     method VARCHAR(20) NOT NULL,
     status VARCHAR(20) NOT NULL DEFAULT 'processing',
+    version BIGINT NOT NULL DEFAULT 0,
     vpa VARCHAR(255),
     card_network VARCHAR(20),
     card_last4 VARCHAR(4),
     error_code VARCHAR(50),
     error_description TEXT,
+    lease_owner VARCHAR(64),
+    lease_until TIMESTAMP,
     created_at TIMESTAMP NOT NULL,
     updated_at TIMESTAMP NOT NULL,
-    FOREIGN KEY (order_id) REFERENCES orders(id),
+    PRIMARY KEY (id, created_at),
     FOREIGN KEY (merchant_id) REFERENCES merchants(id)
-);
+) PARTITION BY RANGE (created_at);
+
+-- Added after the first release: status transitions compare-and-set on version.
+-- A constant default is stored in the catalog, so existing rows are not rewritten.
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Unpaid orders expire (OrderExpiryScheduler); NULL for orders created before, which never do.
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS expires_at TIMESTAMP;
+
+-- Recovery of payments left "processing" (PaymentRecoverySweeper): who is re-driving one and until when.
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(64);
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS lease_until TIMESTAMP;
 
 -- Indexes
-CREATE INDEX IF NOT EXISTS idx_orders_merchant_id ON orders(merchant_id);
 CREATE INDEX IF NOT EXISTS idx_payments_order_id ON payments(order_id);
 CREATE INDEX IF NOT EXISTS idx_payments_status ON payments(status);
+-- Only in-flight payments: the recovery sweep walks it in keyset order
+CREATE INDEX IF NOT EXISTS idx_payments_processing ON payments(created_at, id) WHERE status = 'processing';
+
+-- Orders that may still expire, by deadline: the expiry scheduler loads its next window from it
+CREATE INDEX IF NOT EXISTS idx_orders_expiring ON orders(expires_at, id)
+    WHERE status IN ('created', 'processing', 'attempted') AND expires_at IS NOT NULL;
+
+-- Keyset listing (newest first): one range-scannable index per filter column
+CREATE INDEX IF NOT EXISTS idx_orders_merchant_created ON orders(merchant_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_orders_merchant_status_created ON orders(merchant_id, status, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_payments_merchant_created ON payments(merchant_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_payments_merchant_status_created ON payments(merchant_id, status, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_payments_merchant_method_created ON payments(merchant_id, method, created_at, id);
+
+-- Idempotency Keys Table
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    merchant_id UUID NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_code INTEGER,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL,
+    locked_until TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (merchant_id, idempotency_key),
+    FOREIGN KEY (merchant_id) REFERENCES merchants(id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
+
+-- Webhook outbox: one row per notification, written with the status change
+CREATE TABLE IF NOT EXISTS webhook_events (
+    id VARCHAR(64) PRIMARY KEY,
+    merchant_id UUID NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    resource_id VARCHAR(64) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'pending',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_response_code INTEGER,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL,
+    delivered_at TIMESTAMP,
+    FOREIGN KEY (merchant_id) REFERENCES merchants(id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_events_due ON webhook_events(next_attempt_at) WHERE status = 'pending';
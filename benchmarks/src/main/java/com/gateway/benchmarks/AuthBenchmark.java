@@ -0,0 +1,87 @@
+package com.gateway.benchmarks;
+
+import com.gateway.controllers.OrderController;
+import com.gateway.models.Merchant;
+import com.gateway.models.Order;
+import com.gateway.services.IdGenerator;
+import com.gateway.services.MerchantAuthService;
+import com.gateway.services.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merchant authentication and the authenticated GET order path, with
+ * in-memory repositories so only gateway code is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+
+    private static final String ORDER_ID = "order_01YKcT82S1Pkflcz";
+
+    private MerchantAuthService authService;
+    private OrderController orderController;
+
+    @Setup
+    public void setup() {
+        Merchant merchant = Fixtures.testMerchant();
+
+        authService = new MerchantAuthService();
+        Fixtures.inject(authService, "merchantRepository", Fixtures.merchantRepository(merchant));
+        Fixtures.inject(authService, "meterRegistry", new SimpleMeterRegistry());
+        Fixtures.inject(authService, "maxSize", 10_000L);
+        Fixtures.inject(authService, "ttl", Duration.ofMinutes(10));
+        Fixtures.inject(authService, "negativeTtl", Duration.ofMinutes(10));
+        Fixtures.invoke(authService, "init");
+
+        Map<String, Order> orders = new ConcurrentHashMap<>();
+        orders.put(ORDER_ID, Fixtures.order(ORDER_ID));
+        OrderService orderService = new OrderService();
+        Fixtures.inject(orderService, "orderRepository", Fixtures.orderRepository(orders));
+        Fixtures.inject(orderService, "idGenerator", new IdGenerator(1));
+
+        orderController = new OrderController();
+        Fixtures.inject(orderController, "orderService", orderService);
+        Fixtures.inject(orderController, "merchantAuthService", authService);
+    }
+
+    @Benchmark
+    public Merchant authenticateWarmKey() {
+        return authService.authenticate(Fixtures.API_KEY, Fixtures.API_SECRET);
+    }
+
+    @Benchmark
+    public Merchant authenticateWrongSecret() {
+        return authService.authenticate(Fixtures.API_KEY, "secret_test_xyz780");
+    }
+
+    @Benchmark
+    public Merchant authenticateUnknownKey() {
+        return authService.authenticate("key_unknown", Fixtures.API_SECRET);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getOrder() {
+        // No interceptor in front, so the controller checks the credentials itself.
+        return orderController.getOrder(Fixtures.API_KEY, Fixtures.API_SECRET, null, ORDER_ID);
+    }
+}
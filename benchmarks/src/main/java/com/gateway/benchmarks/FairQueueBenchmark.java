@@ -0,0 +1,104 @@
+package com.gateway.benchmarks;
+
+import com.gateway.services.FairQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The per-merchant fair queue in front of each acquirer rail: 7 threads
+ * enqueueing payments of {@code merchants} merchants while one drains it,
+ * as the engine's single drainer per rail does. The FIFO group is the plain
+ * ConcurrentLinkedQueue it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class FairQueueBenchmark {
+
+    private static final Object PAYMENT = new Object();
+
+    @Param({"1", "100", "10000"})
+    public int merchants;
+
+    private FairQueue<Integer, Object> fairQueue;
+    private Queue<Object> fifo;
+    private AtomicInteger fifoSize;
+
+    @Setup
+    public void setup() {
+        // Bounded as in production, so producers outrunning the consumer are turned away.
+        fairQueue = new FairQueue<>(merchant -> new FairQueue.Share(1 + merchant % 4, 1000));
+        fifo = new ConcurrentLinkedQueue<>();
+        fifoSize = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        int next = ThreadLocalRandom.current().nextInt(1 << 20);
+    }
+
+    @Benchmark
+    @Group("fair")
+    @GroupThreads(7)
+    public boolean fairOffer(Producer producer) {
+        Integer merchant = producer.next++ % merchants;
+        if (!fairQueue.tryReserve(merchant)) {
+            return false;
+        }
+        fairQueue.offer(merchant, PAYMENT);
+        return true;
+    }
+
+    @Benchmark
+    @Group("fair")
+    @GroupThreads(1)
+    public Object fairPoll() {
+        return fairQueue.poll();
+    }
+
+    /* ================= BASELINE ================= */
+
+    @Benchmark
+    @Group("fifo")
+    @GroupThreads(7)
+    public boolean fifoOffer() {
+        // Same bound as the fair queue across all merchants.
+        if (fifoSize.incrementAndGet() > 1000 * merchants) {
+            fifoSize.decrementAndGet();
+            return false;
+        }
+        return fifo.offer(PAYMENT);
+    }
+
+    @Benchmark
+    @Group("fifo")
+    @GroupThreads(1)
+    public Object fifoPoll() {
+        Object payment = fifo.poll();
+        if (payment != null) {
+            fifoSize.decrementAndGet();
+        }
+        return payment;
+    }
+}
@@ -0,0 +1,138 @@
+package com.gateway.benchmarks;
+
+import com.gateway.models.Merchant;
+import com.gateway.models.Order;
+import com.gateway.repositories.MerchantRepository;
+import com.gateway.repositories.OrderRepository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds services outside Spring: field injection by reflection and
+ * in-memory repositories backed by maps.
+ */
+final class Fixtures {
+
+    static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    static final String API_KEY = "key_test_abc123";
+    static final String API_SECRET = "secret_test_xyz789";
+
+    private Fixtures() {
+    }
+
+    static void inject(Object target, String field, Object value) {
+        try {
+            Field f = findField(target.getClass(), field);
+            f.setAccessible(true);
+            f.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void invoke(Object target, String method) {
+        try {
+            Method m = target.getClass().getDeclaredMethod(method);
+            m.setAccessible(true);
+            m.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field findField(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException ignored) {
+                // keep looking in the superclass
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    static Merchant testMerchant() {
+        Merchant merchant = new Merchant();
+        merchant.setId(MERCHANT_ID);
+        merchant.setName("Test Merchant");
+        merchant.setEmail("test@example.com");
+        merchant.setApiKey(API_KEY);
+        merchant.setApiSecret(API_SECRET);
+        merchant.setIsActive(true);
+        merchant.setCreatedAt(LocalDateTime.now());
+        merchant.setUpdatedAt(LocalDateTime.now());
+        return merchant;
+    }
+
+    static Order order(String id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setMerchantId(MERCHANT_ID);
+        order.setAmount(50000);
+        order.setCurrency("INR");
+        order.setReceipt("receipt_123");
+        order.setNotes(Map.of("customer_name", "John Doe", "cart_id", 98213));
+        order.setStatus("created");
+        order.setCreatedAt(LocalDateTime.now());
+        order.setUpdatedAt(LocalDateTime.now());
+        return order;
+    }
+
+    /* ================= IN-MEMORY REPOSITORIES ================= */
+
+    static MerchantRepository merchantRepository(Merchant... merchants) {
+        Map<String, Merchant> byKey = new ConcurrentHashMap<>();
+        for (Merchant m : merchants) {
+            byKey.put(m.getApiKey(), m);
+        }
+        return repository(MerchantRepository.class, (name, args) -> switch (name) {
+            case "findByApiKey" -> Optional.ofNullable(byKey.get((String) args[0]));
+            case "existsByEmail" -> byKey.values().stream().anyMatch(m -> m.getEmail().equals(args[0]));
+            default -> unsupported(name);
+        });
+    }
+
+    static OrderRepository orderRepository(Map<String, Order> orders) {
+        return repository(OrderRepository.class, (name, args) -> switch (name) {
+            case "findById" -> Optional.ofNullable(orders.get((String) args[0]));
+            case "existsById" -> orders.containsKey((String) args[0]);
+            case "save" -> {
+                Order o = (Order) args[0];
+                orders.put(o.getId(), o);
+                yield o;
+            }
+            default -> unsupported(name);
+        });
+    }
+
+    interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toString":
+                    return type.getSimpleName() + "(in-memory)";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return handler.handle(method.getName(), args);
+            }
+        });
+    }
+
+    private static Object unsupported(String method) {
+        throw new UnsupportedOperationException(method + " is not stubbed");
+    }
+}
@@ -0,0 +1,77 @@
+package com.gateway.benchmarks;
+
+import com.gateway.services.IdGenerator;
+import com.gateway.services.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order and payment ID generation against the previous schemes
+ * (shared SecureRandom + existsById probe, and "pay_" + nanoTime).
+ * Run with -t 1 and -t max to see contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class IdGenerationBenchmark {
+
+    private static final String ALPHANUMERIC =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final SecureRandom LEGACY_RANDOM = new SecureRandom();
+
+    private IdGenerator idGenerator;
+    private OrderService orderService;
+
+    @Setup
+    public void setup() {
+        idGenerator = new IdGenerator(1);
+        orderService = new OrderService();
+        Fixtures.inject(orderService, "idGenerator", idGenerator);
+        Fixtures.inject(orderService, "orderRepository", Fixtures.orderRepository(new HashMap<>()));
+    }
+
+    @Benchmark
+    public String orderServiceGenerateOrderId() {
+        return orderService.generateOrderId();
+    }
+
+    @Benchmark
+    public String newPaymentId() {
+        return idGenerator.newPaymentId();
+    }
+
+    /* ================= BASELINE ================= */
+
+    @Benchmark
+    public String legacyOrderId() {
+        // The existsById probe is a database round trip in production and is
+        // left out here, so this baseline is a lower bound.
+        StringBuilder sb = new StringBuilder("order_");
+        for (int i = 0; i < 16; i++) {
+            sb.append(ALPHANUMERIC.charAt(LEGACY_RANDOM.nextInt(ALPHANUMERIC.length())));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String legacyPaymentId() {
+        return "pay_" + System.nanoTime();
+    }
+}
@@ -0,0 +1,130 @@
+package com.gateway.benchmarks;
+
+import com.gateway.PaymentGatewayApplication;
+import com.gateway.dto.CreateOrderRequest;
+import com.gateway.services.OrderService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-create path (one transaction per order) against
+ * OrderService.createOrders (one batched transaction), through the real
+ * Spring/Hibernate stack. Needs a Postgres reachable at -Dbench.jdbc.url
+ * (default: the docker-compose database on localhost), e.g.
+ * <pre>java -jar benchmarks.jar OrderPersistence -jvmArgsAppend -Dbench.jdbc.url=...</pre>
+ * Reports time per order plus JDBC statement, transaction and order totals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderPersistenceBenchmark {
+
+    private static final int ORDERS = 100;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private Statistics statistics;
+    private List<CreateOrderRequest> requests;
+
+    /**
+     * Totals per run; statements / orders and transactions / orders give the
+     * round trips per order.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+        public long statements;
+        public long transactions;
+        public long orders;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            transactions = 0;
+            orders = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(PaymentGatewayApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        // Command-line arguments, so they win over application.properties
+                        "--spring.datasource.url=" + System.getProperty("bench.jdbc.url",
+                                "jdbc:postgresql://localhost:5432/payment_gateway"),
+                        "--spring.datasource.username=" + System.getProperty("bench.jdbc.user", "gateway_user"),
+                        "--spring.datasource.password=" + System.getProperty("bench.jdbc.password", "gateway_pass"),
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN");
+        orderService = context.getBean(OrderService.class);
+        statistics = context.getBean(EntityManagerFactory.class)
+                .unwrap(SessionFactory.class).getStatistics();
+
+        requests = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            CreateOrderRequest request = new CreateOrderRequest();
+            request.setAmount(50000 + i);
+            request.setReceipt("bench_" + i);
+            request.setNotes(Map.of("customer_name", "Bench Customer", "line", i));
+            requests.add(request);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public void singleCreates(RoundTrips roundTrips) {
+        long statements = statistics.getPrepareStatementCount();
+        long transactions = statistics.getTransactionCount();
+        for (CreateOrderRequest request : requests) {
+            orderService.createOrder(request, Fixtures.MERCHANT_ID);
+        }
+        record(roundTrips, statements, transactions);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public void batchCreate(RoundTrips roundTrips) {
+        long statements = statistics.getPrepareStatementCount();
+        long transactions = statistics.getTransactionCount();
+        orderService.createOrders(requests, Fixtures.MERCHANT_ID);
+        record(roundTrips, statements, transactions);
+    }
+
+    private void record(RoundTrips roundTrips, long statements, long transactions) {
+        roundTrips.statements += statistics.getPrepareStatementCount() - statements;
+        roundTrips.transactions += statistics.getTransactionCount() - transactions;
+        roundTrips.orders += ORDERS;
+    }
+}
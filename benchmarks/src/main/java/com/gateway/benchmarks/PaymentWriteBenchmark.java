@@ -0,0 +1,134 @@
+package com.gateway.benchmarks;
+
+import com.gateway.PaymentGatewayApplication;
+import com.gateway.dto.CreateOrderRequest;
+import com.gateway.dto.CreatePaymentRequest;
+import com.gateway.models.Order;
+import com.gateway.services.OrderService;
+import com.gateway.services.PaymentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent payment creation with one transaction per write against
+ * app.payment.group-commit ({@code groupCommit=true}), through the real
+ * Spring/Hibernate stack. Each created payment is also finalized by the
+ * processing engine, so status updates share the write path. Needs Postgres
+ * as for {@link OrderPersistenceBenchmark}:
+ * <pre>java -jar benchmarks.jar PaymentWrite -jvmArgsAppend -Dbench.jdbc.url=...</pre>
+ * Throughput mode gives payments/s and commits/s; sample mode gives p99.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class PaymentWriteBenchmark {
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    @Param({"2ms"})
+    public String maxWait;
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private Statistics statistics;
+    private Order order;
+    private CreatePaymentRequest request;
+
+    private long iterationCommits;
+
+    /**
+     * Database commits per second (inserts and engine status updates),
+     * reported next to the payment rate in throughput mode. Commits are
+     * counted globally, so each thread reports an equal share.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Commits {
+        public double commits;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void share(PaymentWriteBenchmark benchmark, BenchmarkParams params) {
+            commits = (double) (benchmark.statistics.getTransactionCount() - benchmark.iterationCommits)
+                    / params.getThreads();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void markCommits() {
+        iterationCommits = statistics.getTransactionCount();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(PaymentGatewayApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=" + System.getProperty("bench.jdbc.url",
+                                "jdbc:postgresql://localhost:5432/payment_gateway"),
+                        "--spring.datasource.username=" + System.getProperty("bench.jdbc.user", "gateway_user"),
+                        "--spring.datasource.password=" + System.getProperty("bench.jdbc.password", "gateway_pass"),
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+                        "--app.payment.group-commit.enabled=" + groupCommit,
+                        "--app.payment.group-commit.max-wait=" + maxWait,
+                        // Keep the engine's backlog small so admission never rejects.
+                        "--app.test.mode=true",
+                        "--app.test.processing.delay=10",
+                        "--app.webhooks.enabled=false");
+        paymentService = context.getBean(PaymentService.class);
+        statistics = context.getBean(EntityManagerFactory.class)
+                .unwrap(SessionFactory.class).getStatistics();
+
+        CreateOrderRequest orderRequest = new CreateOrderRequest();
+        orderRequest.setAmount(50000);
+        orderRequest.setReceipt("bench_payments");
+        order = context.getBean(OrderService.class).createOrder(orderRequest, Fixtures.MERCHANT_ID);
+
+        request = new CreatePaymentRequest();
+        Fixtures.inject(request, "orderId", order.getId());
+        Fixtures.inject(request, "method", "upi");
+        Fixtures.inject(request, "vpa", "bench@okbank");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object createPayment(Commits commits) {
+        return paymentService.createAndProcessPayment(request, order, null);
+    }
+}
@@ -0,0 +1,86 @@
+package com.gateway.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gateway.dto.CreatePaymentRequest;
+import com.gateway.services.RiskCheckService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One velocity decision (card, IP and merchant rules over 1m, 10m and 1h:
+ * nine counters) from 8 threads, over {@code cards} distinct cards. With
+ * more cards than a table holds (65536), most decisions also evict.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class RiskCheckBenchmark {
+
+    @Param({"1000", "200000"})
+    public int cards;
+
+    private RiskCheckService riskCheckService;
+    private CreatePaymentRequest[] requests;
+
+    @Setup
+    public void setup() throws Exception {
+        // Limits no payment reaches, so every rule is counted and none declines.
+        Map<String, Object> properties = new HashMap<>();
+        for (String dimension : new String[] {"card", "ip", "merchant"}) {
+            for (String window : new String[] {"1m", "10m", "1h"}) {
+                properties.put("app.risk." + dimension + "." + window, Integer.MAX_VALUE);
+            }
+        }
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+
+        riskCheckService = new RiskCheckService();
+        Fixtures.inject(riskCheckService, "environment", environment);
+        Fixtures.inject(riskCheckService, "meterRegistry", new SimpleMeterRegistry());
+        Fixtures.inject(riskCheckService, "enabled", true);
+        Fixtures.inject(riskCheckService, "windowNames", new String[] {"1m", "10m", "1h"});
+        Fixtures.inject(riskCheckService, "buckets", 10);
+        Fixtures.inject(riskCheckService, "capacity", 65536);
+        Fixtures.inject(riskCheckService, "stripes", 64);
+        Fixtures.inject(riskCheckService, "budget", Duration.ofNanos(200_000));
+        Fixtures.invoke(riskCheckService, "init");
+
+        // Payers from 4096 addresses.
+        ObjectMapper mapper = new ObjectMapper();
+        requests = new CreatePaymentRequest[cards];
+        for (int i = 0; i < cards; i++) {
+            requests[i] = mapper.readValue("{\"method\":\"card\",\"customer_ip\":\"10.0."
+                    + ((i >> 8) & 15) + "." + (i & 255) + "\",\"card\":{\"number\":\""
+                    + (4_000_000_000_000_000L + i) + "\"}}", CreatePaymentRequest.class);
+        }
+    }
+
+    @Benchmark
+    public RiskCheckService.Decision check() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return riskCheckService.check(requests[random.nextInt(requests.length)], Fixtures.MERCHANT_ID);
+    }
+}
@@ -0,0 +1,107 @@
+package com.gateway.benchmarks;
+
+import com.gateway.dto.CreatePaymentRequest;
+import com.gateway.services.CardAnalysis;
+import com.gateway.services.ValidationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Card and VPA validation, with the pre-single-pass regex implementation
+ * kept alongside as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @Param({"4111111111111111", "4111 1111 1111 1111", "378282246310005"})
+    public String cardNumber;
+
+    public String vpa = "customer.name-01@okaxis";
+
+    private ValidationService validationService;
+    private CreatePaymentRequest.CardDetails card;
+
+    @Setup
+    public void setup() throws Exception {
+        validationService = new ValidationService();
+        card = new ObjectMapper().readValue(
+                "{\"number\":\"" + cardNumber + "\",\"expiry_month\":12,\"expiry_year\":2030," +
+                "\"cvv\":\"123\",\"holder_name\":\"John Doe\"}",
+                CreatePaymentRequest.CardDetails.class);
+    }
+
+    @Benchmark
+    public boolean validateCardNumber() {
+        return validationService.validateCardNumber(cardNumber);
+    }
+
+    @Benchmark
+    public String detectCardNetwork() {
+        return validationService.detectCardNetwork(cardNumber);
+    }
+
+    @Benchmark
+    public CardAnalysis analyzeCard() {
+        return validationService.analyzeCard(card);
+    }
+
+    @Benchmark
+    public boolean isValidVpa() {
+        return validationService.isValidVpa(vpa);
+    }
+
+    /* ================= BASELINE (regex) ================= */
+
+    private static final Pattern LEGACY_VPA = Pattern.compile("^[a-zA-Z0-9._-]+@[a-zA-Z0-9]+$");
+
+    @Benchmark
+    public boolean legacyValidateCardNumber() {
+        String c = cardNumber.replaceAll("\\s+", "");
+        if (!c.matches("\\d{16}")) return false;
+        int sum = 0;
+        boolean alternate = false;
+        for (int i = c.length() - 1; i >= 0; i--) {
+            int n = c.charAt(i) - '0';
+            if (alternate) {
+                n *= 2;
+                if (n > 9) n -= 9;
+            }
+            sum += n;
+            alternate = !alternate;
+        }
+        return sum % 10 == 0;
+    }
+
+    @Benchmark
+    public String legacyDetectCardNetwork() {
+        String c = cardNumber.replaceAll("[\\s-]", "");
+        if (c.startsWith("4")) return "visa";
+        if (c.matches("^5[1-5].*")) return "mastercard";
+        if (c.matches("^3[47].*")) return "amex";
+        if (c.matches("^(60|65|8[1-9]).*")) return "rupay";
+        return "unknown";
+    }
+
+    @Benchmark
+    public boolean legacyIsValidVpa() {
+        return LEGACY_VPA.matcher(vpa).matches();
+    }
+}
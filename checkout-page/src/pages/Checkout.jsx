@@ -87,8 +87,8 @@ function Checkout() {
       const payment = await response.json();
       setPaymentId(payment.id);
       
-      // Poll for payment status
-      pollPaymentStatus(payment.id);
+      // Wait for the final status
+      watchPaymentStatus(payment.id);
       
     } catch (error) {
       setState('error');
@@ -96,43 +96,71 @@ function Checkout() {
     }
   };
 
-  const pollPaymentStatus = async (paymentId) => {
-    const maxAttempts = 30;
-    let attempts = 0;
-    
-    const poll = async () => {
+  const applyStatus = (payment) => {
+    if (payment.status === 'success') {
+      setState('success');
+      return true;
+    } else if (payment.status === 'failed') {
+      setState('error');
+      setErrorMessage(payment.error_description || 'Payment failed');
+      return true;
+    }
+    return false;
+  };
+
+  // Server-Sent Events: the server pushes the status once it changes.
+  // Browsers without EventSource fall back to long-polling /public/wait.
+  const watchPaymentStatus = (paymentId) => {
+    const statusUrl = `${API_URL}/api/v1/payments/${paymentId}/public`;
+
+    if (!window.EventSource) {
+      waitForPaymentStatus(statusUrl);
+      return;
+    }
+
+    const source = new EventSource(`${statusUrl}/events`);
+    let failures = 0;
+
+    source.addEventListener('status', (event) => {
+      failures = 0;
+      if (applyStatus(JSON.parse(event.data))) {
+        source.close();
+      }
+    });
+
+    // The stream ends after an idle timeout and EventSource reconnects on
+    // its own; give up only if reconnecting keeps failing.
+    source.onerror = () => {
+      failures++;
+      if (failures >= 5) {
+        source.close();
+        setState('error');
+        setErrorMessage('Failed to check payment status');
+      }
+    };
+  };
+
+  const waitForPaymentStatus = async (statusUrl) => {
+    const maxAttempts = 10;
+
+    for (let attempt = 0; attempt < maxAttempts; attempt++) {
       try {
-        const response = await fetch(`${API_URL}/api/v1/payments/${paymentId}/public`);
+        const response = await fetch(`${statusUrl}/wait`);
         if (!response.ok) {
           throw new Error('Failed to fetch payment status');
         }
-        
-        const payment = await response.json();
-        
-        if (payment.status === 'success') {
-          setState('success');
+        if (applyStatus(await response.json())) {
           return;
-        } else if (payment.status === 'failed') {
-          setState('error');
-          setErrorMessage(payment.errorDescription || 'Payment failed');
-          return;
-        }
-        
-        // Continue polling
-        attempts++;
-        if (attempts < maxAttempts) {
-          setTimeout(poll, 2000);
-        } else {
-          setState('error');
-          setErrorMessage('Payment processing timeout');
         }
       } catch (error) {
         setState('error');
         setErrorMessage('Failed to check payment status');
+        return;
       }
-    };
-    
-    poll();
+    }
+
+    setState('error');
+    setErrorMessage('Payment processing timeout');
   };
 
   const handleRetry = () => {
@@ -2,10 +2,15 @@ import React, { useEffect, useState } from 'react';
 import { Link, useNavigate } from 'react-router-dom';
 
 const API_URL = 'http://localhost:8000';
+const API_KEY = 'key_test_abc123';
+const API_SECRET = 'secret_test_xyz789';
+const PAGE_SIZE = 50;
 
 function Transactions() {
   const navigate = useNavigate();
   const [transactions, setTransactions] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loading, setLoading] = useState(false);
 
   useEffect(() => {
     const merchantEmail = localStorage.getItem('merchantEmail');
@@ -17,13 +22,28 @@ function Transactions() {
     fetchTransactions();
   }, [navigate]);
 
-  const fetchTransactions = async () => {
+  const fetchTransactions = async (cursor) => {
+    setLoading(true);
     try {
-      // Note: In a real app, we'd have an endpoint to fetch all payments for a merchant
-      // For now, we'll show empty or placeholder data
-      setTransactions([]);
+      const params = new URLSearchParams({ limit: PAGE_SIZE });
+      if (cursor) {
+        params.set('cursor', cursor);
+      }
+      const response = await fetch(`${API_URL}/api/v1/payments?${params}`, {
+        headers: {
+          'X-Api-Key': API_KEY,
+          'X-Api-Secret': API_SECRET
+        }
+      });
+      if (response.ok) {
+        const page = await response.json();
+        setTransactions((previous) => cursor ? [...previous, ...page.items] : page.items);
+        setNextCursor(page.has_more ? page.next_cursor : null);
+      }
     } catch (error) {
       console.error('Error fetching transactions:', error);
+    } finally {
+      setLoading(false);
     }
   };
 
@@ -82,7 +102,7 @@ function Transactions() {
                 transactions.map((transaction) => (
                   <tr key={transaction.id} data-test-id="transaction-row" data-payment-id={transaction.id}>
                     <td data-test-id="payment-id">{transaction.id}</td>
-                    <td data-test-id="order-id">{transaction.orderId}</td>
+                    <td data-test-id="order-id">{transaction.order_id}</td>
                     <td data-test-id="amount">{transaction.amount}</td>
                     <td data-test-id="method">{transaction.method}</td>
                     <td>
@@ -90,12 +110,22 @@ function Transactions() {
                         {transaction.status}
                       </span>
                     </td>
-                    <td data-test-id="created-at">{formatDate(transaction.createdAt)}</td>
+                    <td data-test-id="created-at">{formatDate(transaction.created_at)}</td>
                   </tr>
                 ))
               )}
             </tbody>
           </table>
+          {nextCursor && (
+            <button
+              onClick={() => fetchTransactions(nextCursor)}
+              disabled={loading}
+              data-test-id="load-more"
+              style={{marginTop: '20px'}}
+            >
+              {loading ? 'Loading...' : 'Load more'}
+            </button>
+          )}
         </div>
       </div>
     </div>
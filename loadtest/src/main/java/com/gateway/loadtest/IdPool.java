@@ -0,0 +1,36 @@
+package com.gateway.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recently created ids, overwritten ring-buffer style so reads
+ * keep hitting fresh rows rather than a growing history.
+ */
+final class IdPool {
+
+    private final AtomicReferenceArray<String> ids;
+    private final AtomicLong added = new AtomicLong();
+
+    IdPool(int capacity) {
+        this.ids = new AtomicReferenceArray<>(capacity);
+    }
+
+    void add(String id) {
+        ids.set((int) (added.getAndIncrement() % ids.length()), id);
+    }
+
+    /** A random id, or null while the pool is empty. */
+    String random() {
+        long size = Math.min(added.get(), ids.length());
+        if (size == 0) {
+            return null;
+        }
+        return ids.get(ThreadLocalRandom.current().nextInt((int) size));
+    }
+
+    long added() {
+        return added.get();
+    }
+}
@@ -0,0 +1,138 @@
+package com.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Entry point of loadtest.jar: seeds a few orders, runs a warmup phase and
+ * a measured phase at a fixed arrival rate against a running gateway, then
+ * writes the JSON report and prints a summary (and the comparison with
+ * {@code --baseline}, if given). {@code compare} diffs two reports and
+ * {@code race} runs {@link RaceCheck}.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        if (args.length > 0 && args[0].equals("compare")) {
+            if (args.length != 3) {
+                Options.usage();
+                System.exit(2);
+            }
+            Report.compare(mapper.readTree(new File(args[1])), mapper.readTree(new File(args[2])), System.out);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("race")) {
+            Options options = Options.parse(Arrays.copyOfRange(args, 1, args.length));
+            ExecutorService executor = executor();
+            boolean held = new RaceCheck(client(options, executor), new Requests(options), mapper, options).run();
+            executor.shutdownNow();
+            System.exit(held ? 0 : 1);
+        }
+
+        Options options = Options.parse(args);
+        ExecutorService executor = executor();
+        HttpClient client = client(options, executor);
+        Requests requests = new Requests(options);
+
+        seed(client, requests, mapper, options);
+
+        OpenLoopDriver driver = new OpenLoopDriver(client, requests, mapper, options);
+        Map<Operation, OperationStats> warmup = stats(options);
+        Map<Operation, OperationStats> measured = stats(options);
+
+        System.out.printf("Running %s at %.1f req/s against %s (warmup %s)%n",
+                Report.describe(options.duration), options.rate, options.baseUrl, Report.describe(options.warmup));
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup.toNanos();
+        driver.run(warmup, start, measureFrom);
+        driver.run(measured, measureFrom, measureFrom + options.duration.toNanos());
+        boolean drained = driver.drain(options.timeout.toNanos() * 2);
+        long elapsed = Math.max(System.nanoTime() - measureFrom, options.duration.toNanos());
+        measured.values().forEach(OperationStats::close);
+
+        ObjectNode report = Report.build(mapper, options, startedAt, measured, elapsed,
+                driver.maxLagNanos(), drained);
+        mapper.writerWithDefaultPrettyPrinter().writeValue(new File(options.report), report);
+
+        System.out.println();
+        Report.print(report, System.out);
+        System.out.println();
+        System.out.println("Report written to " + options.report);
+
+        if (options.baseline != null) {
+            JsonNode baseline = mapper.readTree(new File(options.baseline));
+            System.out.println();
+            Report.compare(baseline, report, System.out);
+        }
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService executor() {
+        return Executors.newFixedThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                    Thread t = new Thread(r, "loadtest-http");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    private static HttpClient client(Options options, ExecutorService executor) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(options.timeout)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Create {@code seed-orders} orders, and a payment for every fourth, so
+     * reads have something to hit from the first request. The other orders
+     * are left for the run's payments. Fails fast on bad credentials or an
+     * unreachable server.
+     */
+    private static void seed(HttpClient client, Requests requests, ObjectMapper mapper, Options options)
+            throws IOException, InterruptedException {
+        int orders = Math.max(1, options.seedOrders);
+        for (int i = 0; i < orders; i++) {
+            String orderId = create(client, requests.createOrder(), mapper);
+            if (i % 4 == 0) {
+                requests.orders().add(orderId);
+                requests.payments().add(create(client, requests.createUpiPayment(orderId), mapper));
+            } else {
+                requests.orderCreated(orderId);
+            }
+        }
+        System.out.printf("Seeded %d orders and %d payments%n", requests.orders().added(), requests.payments().added());
+    }
+
+    private static String create(HttpClient client, HttpRequest request, ObjectMapper mapper)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException("Seeding failed: " + request.method() + " " + request.uri()
+                    + " returned " + response.statusCode() + " " + response.body());
+        }
+        return mapper.readTree(response.body()).path("id").asText();
+    }
+
+    private static Map<Operation, OperationStats> stats(Options options) {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        options.mix.keySet().forEach(operation -> stats.put(operation, new OperationStats()));
+        return stats;
+    }
+}
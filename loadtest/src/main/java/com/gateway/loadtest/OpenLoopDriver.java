@@ -0,0 +1,170 @@
+package com.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts requests at a constant rate whatever the response times are
+ * (an open workload, like independent shoppers), so a slow server builds
+ * up concurrency instead of quietly being sent less work.
+ *
+ * Request i is due at {@code start + i / rate}. If the driver falls behind,
+ * because of a pause or because {@code max-in-flight} requests are already
+ * outstanding, it sends late but still measures from the due time.
+ */
+final class OpenLoopDriver {
+
+    private final HttpClient client;
+    private final Requests requests;
+    private final ObjectMapper mapper;
+    private final Operation[] weighted;
+    private final double intervalNanos;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    OpenLoopDriver(HttpClient client, Requests requests, ObjectMapper mapper, Options options) {
+        this.client = client;
+        this.requests = requests;
+        this.mapper = mapper;
+        this.intervalNanos = 1e9 / options.rate;
+        this.maxInFlight = options.maxInFlight;
+        this.inFlight = new Semaphore(options.maxInFlight);
+
+        List<Operation> slots = new ArrayList<>();
+        options.mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                slots.add(operation);
+            }
+        });
+        this.weighted = slots.toArray(new Operation[0]);
+    }
+
+    /**
+     * Send everything due in {@code [startNanos, endNanos)} and return
+     * without waiting for the responses.
+     */
+    void run(Map<Operation, OperationStats> stats, long startNanos, long endNanos) {
+        for (long i = 0; ; i++) {
+            long due = startNanos + (long) (i * intervalNanos);
+            if (due >= endNanos) {
+                return;
+            }
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+
+            Operation operation = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+            OperationStats target = stats.get(operation);
+            var request = operation.request(requests);
+            if (request == null) {
+                target.skip();
+                continue;
+            }
+
+            inFlight.acquireUninterruptibly();
+            long sentAt = System.nanoTime();
+            maxLagNanos.accumulateAndGet(sentAt - due, Math::max);
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> {
+                        try {
+                            complete(operation, target, due, sentAt, response, error);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+    }
+
+    /** Wait for outstanding responses; false if some are still open. */
+    boolean drain(long timeoutNanos) throws InterruptedException {
+        if (!inFlight.tryAcquire(maxInFlight, timeoutNanos, TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        inFlight.release(maxInFlight);
+        return true;
+    }
+
+    long maxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    private void complete(Operation operation, OperationStats stats, long due, long sentAt,
+                          HttpResponse<byte[]> response, Throwable error) {
+        long done = System.nanoTime();
+        if (error != null) {
+            stats.record(due, sentAt, done, 0, classify(error));
+            return;
+        }
+        int status = response.statusCode();
+        if (status >= 400) {
+            stats.record(due, sentAt, done, status, errorCode(response.body(), status));
+            return;
+        }
+        stats.record(due, sentAt, done, status, null);
+
+        if (operation.creates()) {
+            String id = field(response.body(), "id");
+            if (id != null) {
+                operation.created(requests, id);
+            }
+        }
+    }
+
+    /** The {@code error.code} of an {@code ErrorResponse}, or {@code HTTP_<status>}. */
+    private String errorCode(byte[] body, int status) {
+        try {
+            String code = mapper.readTree(body).path("error").path("code").asText(null);
+            if (code != null && !code.isEmpty()) {
+                return code;
+            }
+        } catch (IOException ignored) {
+            // not JSON: proxies, the servlet container's own error page
+        }
+        return "HTTP_" + status;
+    }
+
+    private String field(byte[] body, String name) {
+        try {
+            JsonNode value = mapper.readTree(body).get(name);
+            return value == null ? null : value.asText();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static String classify(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return "CLIENT_TIMEOUT";
+        }
+        if (cause instanceof ConnectException) {
+            return "CONNECT_ERROR";
+        }
+        if (cause instanceof IOException) {
+            return "IO_ERROR";
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,89 @@
+package com.gateway.loadtest;
+
+import java.net.http.HttpRequest;
+import java.util.Locale;
+
+/**
+ * The API calls a run is mixed from. Reads pick a random id from what the
+ * run (and its seed phase) created so far; payments take an order nobody
+ * has paid yet, since an order accepts a single payment.
+ */
+enum Operation {
+
+    CREATE_ORDER {
+        @Override
+        HttpRequest request(Requests requests) {
+            return requests.createOrder();
+        }
+    },
+    CREATE_PAYMENT_UPI {
+        @Override
+        HttpRequest request(Requests requests) {
+            String orderId = requests.unpaidOrder();
+            return orderId == null ? null : requests.createUpiPayment(orderId);
+        }
+    },
+    CREATE_PAYMENT_CARD {
+        @Override
+        HttpRequest request(Requests requests) {
+            String orderId = requests.unpaidOrder();
+            return orderId == null ? null : requests.createCardPayment(orderId);
+        }
+    },
+    GET_ORDER {
+        @Override
+        HttpRequest request(Requests requests) {
+            String orderId = requests.orders().random();
+            return orderId == null ? null : requests.get("/api/v1/orders/" + orderId, true);
+        }
+    },
+    GET_PAYMENT {
+        @Override
+        HttpRequest request(Requests requests) {
+            String paymentId = requests.payments().random();
+            return paymentId == null ? null : requests.get("/api/v1/payments/" + paymentId, true);
+        }
+    },
+    GET_ORDER_PUBLIC {
+        @Override
+        HttpRequest request(Requests requests) {
+            String orderId = requests.orders().random();
+            return orderId == null ? null : requests.get("/api/v1/orders/" + orderId + "/public", false);
+        }
+    },
+    GET_PAYMENT_PUBLIC {
+        @Override
+        HttpRequest request(Requests requests) {
+            String paymentId = requests.payments().random();
+            return paymentId == null ? null : requests.get("/api/v1/payments/" + paymentId + "/public", false);
+        }
+    };
+
+    /** The request to send, or null when there is nothing to read yet. */
+    abstract HttpRequest request(Requests requests);
+
+    boolean creates() {
+        return this == CREATE_ORDER || this == CREATE_PAYMENT_UPI || this == CREATE_PAYMENT_CARD;
+    }
+
+    /** Record the id of a resource this operation created. */
+    void created(Requests requests, String id) {
+        if (this == CREATE_ORDER) {
+            requests.orderCreated(id);
+        } else {
+            requests.payments().add(id);
+        }
+    }
+
+    String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static Operation byName(String key) {
+        try {
+            return valueOf(key.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown operation " + key);
+        }
+    }
+}
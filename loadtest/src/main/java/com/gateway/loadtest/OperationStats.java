@@ -0,0 +1,90 @@
+package com.gateway.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes of one operation in one phase of the run.
+ *
+ * Latency is measured from the time the request was scheduled to start,
+ * not from when it actually went out: a stalled server (or a full client)
+ * delays later sends, and those delays belong in the percentiles. Service
+ * time, from send to last byte, is kept next to it to tell the two apart.
+ */
+final class OperationStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder latency = new Recorder(SIGNIFICANT_DIGITS);
+    private final Recorder serviceTime = new Recorder(SIGNIFICANT_DIGITS);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private Histogram latencyHistogram;
+    private Histogram serviceTimeHistogram;
+
+    void record(long intendedNanos, long sentNanos, long doneNanos, int status, String errorCode) {
+        latency.recordValue(Math.max(doneNanos - intendedNanos, 0));
+        serviceTime.recordValue(Math.max(doneNanos - sentNanos, 0));
+        if (status > 0) {
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+        if (errorCode == null) {
+            succeeded.increment();
+        } else {
+            errors.computeIfAbsent(errorCode, c -> new LongAdder()).increment();
+        }
+    }
+
+    /** Scheduled, but nothing to act on yet (e.g. no payment to read). */
+    void skip() {
+        skipped.increment();
+    }
+
+    /** Freeze the histograms; call once, after the phase has drained. */
+    void close() {
+        latencyHistogram = latency.getIntervalHistogram();
+        serviceTimeHistogram = serviceTime.getIntervalHistogram();
+    }
+
+    Histogram latency() {
+        return latencyHistogram;
+    }
+
+    Histogram serviceTime() {
+        return serviceTimeHistogram;
+    }
+
+    long succeeded() {
+        return succeeded.sum();
+    }
+
+    long skipped() {
+        return skipped.sum();
+    }
+
+    long failed() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    Map<String, Long> errors() {
+        return sorted(errors);
+    }
+
+    Map<String, Long> statuses() {
+        return sorted(statuses);
+    }
+
+    private static <K> Map<String, Long> sorted(Map<K, LongAdder> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        counts.forEach((key, count) -> result.put(key.toString(), count.sum()));
+        return result;
+    }
+}
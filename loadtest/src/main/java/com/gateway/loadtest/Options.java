@@ -0,0 +1,136 @@
+package com.gateway.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line of loadtest.jar: {@code --name=value} pairs, every one optional.
+ */
+final class Options {
+
+    /** Roughly what a busy checkout sees: mostly status polling, one write in four. */
+    static final String DEFAULT_MIX = "create_order=10,create_payment_upi=5,create_payment_card=5,"
+            + "get_order=10,get_payment=10,get_order_public=20,get_payment_public=40";
+
+    String baseUrl = "http://localhost:8000";
+    String apiKey = "key_test_abc123";
+    String apiSecret = "secret_test_xyz789";
+    double rate = 200;
+    Duration duration = Duration.ofSeconds(60);
+    Duration warmup = Duration.ofSeconds(10);
+    Duration timeout = Duration.ofSeconds(10);
+    int maxInFlight = 1024;
+    int seedOrders = 100;
+    Map<Operation, Integer> mix = parseMix(DEFAULT_MIX);
+    String report = "loadtest-report.json";
+    String baseline;
+    String label;
+    int parallel = 200;
+    int rounds = 10;
+
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                usage();
+                System.exit(0);
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "base-url" -> options.baseUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "api-key" -> options.apiKey = value;
+                case "api-secret" -> options.apiSecret = value;
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "duration" -> options.duration = parseDuration(value);
+                case "warmup" -> options.warmup = parseDuration(value);
+                case "timeout" -> options.timeout = parseDuration(value);
+                case "max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "seed-orders" -> options.seedOrders = Integer.parseInt(value);
+                case "mix" -> options.mix = parseMix(value);
+                case "report" -> options.report = value;
+                case "baseline" -> options.baseline = value;
+                case "label" -> options.label = value;
+                case "parallel" -> options.parallel = Integer.parseInt(value);
+                case "rounds" -> options.rounds = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        if (options.rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        if (options.maxInFlight < 1) {
+            throw new IllegalArgumentException("--max-in-flight must be at least 1");
+        }
+        if (options.parallel < 2 || options.rounds < 1) {
+            throw new IllegalArgumentException("--parallel must be at least 2 and --rounds at least 1");
+        }
+        return options;
+    }
+
+    /** {@code 90s}, {@code 2m}, {@code 500ms}, or plain seconds. */
+    static Duration parseDuration(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        if (v.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        }
+        if (v.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        if (v.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+
+    /** {@code name=weight,...}; operations left out are not run. */
+    static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] kv = part.split("=", 2);
+            int weight = kv.length == 2 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight > 0) {
+                mix.put(Operation.byName(kv[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("--mix selects no operations");
+        }
+        return mix;
+    }
+
+    static void usage() {
+        System.out.println("""
+                Usage: java -jar loadtest.jar [--name=value ...]
+                       java -jar loadtest.jar compare <baseline.json> <report.json>
+                       java -jar loadtest.jar race [--parallel=N] [--rounds=N] [--base-url=...]
+
+                  --base-url       API root (http://localhost:8000)
+                  --api-key        merchant key (test merchant)
+                  --api-secret     merchant secret (test merchant)
+                  --rate           requests/s started, independent of response times (200)
+                  --duration       measured phase (60s)
+                  --warmup         unreported phase before it (10s)
+                  --timeout        per request (10s)
+                  --max-in-flight  client-side cap; late starts still count as latency (1024)
+                  --seed-orders    orders created before the run for reads and payments (100)
+                  --mix            operation=weight list (%s)
+                  --report         JSON report path (loadtest-report.json)
+                  --baseline       earlier report to compare against
+                  --label          free text stored in the report, e.g. a commit id
+
+                race: concurrent payments on one order, checking that exactly one is accepted
+                  --parallel       payments fired at once per round (200)
+                  --rounds         rounds until a payment succeeds; failed ones leave it payable (10)
+                """.formatted(DEFAULT_MIX));
+    }
+}
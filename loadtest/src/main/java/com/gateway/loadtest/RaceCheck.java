@@ -0,0 +1,172 @@
+package com.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fires {@code --parallel} payments at one order at once and checks that
+ * the order state machine holds: a payment is only accepted while no other
+ * one for the order is in flight, everything else gets 409, and at most one
+ * succeeds. A failed payment leaves the order "attempted" (payable again),
+ * so a round may accept a second payment after the first one failed, and
+ * rounds repeat until one succeeds; then the order must be "paid" and a
+ * last round must be refused with ORDER_ALREADY_PAID. Run the gateway with
+ * app.ratelimit.enabled=false, or most of a round is throttled before it
+ * reaches the order.
+ */
+final class RaceCheck {
+
+    private static final long SETTLE_TIMEOUT_MILLIS = 60_000;
+
+    private final HttpClient client;
+    private final Requests requests;
+    private final ObjectMapper mapper;
+    private final Options options;
+    private final List<String> violations = new ArrayList<>();
+
+    RaceCheck(HttpClient client, Requests requests, ObjectMapper mapper, Options options) {
+        this.client = client;
+        this.requests = requests;
+        this.mapper = mapper;
+        this.options = options;
+    }
+
+    /** True if every round behaved. */
+    boolean run() throws IOException, InterruptedException {
+        HttpResponse<String> created = client.send(requests.createOrder(), HttpResponse.BodyHandlers.ofString());
+        if (created.statusCode() != 201) {
+            throw new IllegalStateException("Creating the order failed: " + created.statusCode() + " " + created.body());
+        }
+        String orderId = mapper.readTree(created.body()).path("id").asText();
+        System.out.printf("Racing %d payments per round on order %s%n", options.parallel, orderId);
+
+        int accepted = 0;
+        int successes = 0;
+        // The round after the success is not counted: it checks the paid order refuses payments.
+        for (int round = 1; successes > 0 || round <= options.rounds; round++) {
+            List<String> ids = new ArrayList<>();
+            Map<String, Integer> outcomes = race(orderId, ids);
+            System.out.printf("round %d: %s%n", round, outcomes);
+
+            if (successes > 0) {
+                if (outcomes.getOrDefault("409 ORDER_ALREADY_PAID", 0) != options.parallel) {
+                    violations.add("round " + round + ": a paid order did not refuse every payment");
+                }
+                break;
+            }
+            if (ids.isEmpty()) {
+                violations.add("round " + round + ": no payment accepted for a payable order");
+                break;
+            }
+            accepted += ids.size();
+
+            List<JsonNode> payments = new ArrayList<>();
+            for (String id : ids) {
+                payments.add(awaitFinal(id));
+            }
+            // Accepted one after another: each must have failed before the next was created.
+            payments.sort(Comparator.comparing(p -> p.path("created_at").asText()));
+            JsonNode previous = null;
+            for (JsonNode payment : payments) {
+                String status = payment.path("status").asText();
+                System.out.printf("         %s %s -> %s%n", payment.path("created_at").asText(),
+                        payment.path("id").asText(), status);
+                if (previous != null && !("failed".equals(previous.path("status").asText())
+                        && previous.path("updated_at").asText().compareTo(payment.path("created_at").asText()) <= 0)) {
+                    violations.add("round " + round + ": " + payment.path("id").asText()
+                            + " was accepted while " + previous.path("id").asText() + " was in flight");
+                }
+                if ("success".equals(status)) {
+                    successes++;
+                } else if (!"failed".equals(status)) {
+                    violations.add("round " + round + ": " + payment.path("id").asText() + " still " + status);
+                }
+                previous = payment;
+            }
+
+            String order = field(requests.get("/api/v1/orders/" + orderId, true), "status");
+            String expected = successes > 0 ? "paid" : "attempted";
+            System.out.printf("         order %s%n", order);
+            if (!expected.equals(order)) {
+                violations.add("round " + round + ": order is " + order + ", expected " + expected);
+            }
+        }
+
+        if (successes > 1) {
+            violations.add(successes + " successful payments on one order");
+        }
+        if (successes == 0 && violations.isEmpty()) {
+            System.out.printf("No payment succeeded in %d rounds; raise --rounds or the success rate%n", options.rounds);
+        }
+        if (violations.isEmpty()) {
+            System.out.printf("OK: %d payments accepted, never two at once; %d succeeded%n", accepted, successes);
+            return true;
+        }
+        violations.forEach(v -> System.out.println("VIOLATION " + v));
+        return false;
+    }
+
+    /** Send every payment before waiting for any; counts "status code" outcomes. */
+    private Map<String, Integer> race(String orderId, List<String> accepted) {
+        List<CompletableFuture<HttpResponse<String>>> inFlight = new ArrayList<>(options.parallel);
+        for (int i = 0; i < options.parallel; i++) {
+            HttpRequest request = i % 2 == 0 ? requests.createUpiPayment(orderId) : requests.createCardPayment(orderId);
+            inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        Map<String, Integer> outcomes = new TreeMap<>();
+        for (CompletableFuture<HttpResponse<String>> future : inFlight) {
+            String outcome;
+            try {
+                HttpResponse<String> response = future.join();
+                JsonNode body = readTree(response.body());
+                if (response.statusCode() == 201) {
+                    accepted.add(body.path("id").asText());
+                    outcome = "201";
+                } else {
+                    outcome = response.statusCode() + " " + body.path("error").path("code").asText("");
+                }
+            } catch (RuntimeException e) {
+                outcome = OpenLoopDriver.classify(e);
+            }
+            outcomes.merge(outcome.trim(), 1, Integer::sum);
+        }
+        if (outcomes.keySet().stream().anyMatch(o -> o.startsWith("429"))) {
+            System.out.println("         (throttled by the rate limiter; start the gateway with app.ratelimit.enabled=false)");
+        }
+        return outcomes;
+    }
+
+    private JsonNode awaitFinal(String paymentId) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        HttpRequest request = requests.get("/api/v1/payments/" + paymentId, true);
+        JsonNode payment;
+        do {
+            Thread.sleep(200);
+            payment = readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+        } while ("processing".equals(payment.path("status").asText()) && System.currentTimeMillis() < deadline);
+        return payment;
+    }
+
+    private String field(HttpRequest request, String name) throws IOException, InterruptedException {
+        return readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body()).path(name).asText(null);
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            return mapper.createObjectNode();
+        }
+    }
+}
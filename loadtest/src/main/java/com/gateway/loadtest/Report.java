@@ -0,0 +1,193 @@
+package com.gateway.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The JSON report of a run, its console summary, and the comparison of two
+ * reports. Times are milliseconds. Rates are per second of the measured
+ * phase up to its last response, so an overloaded server cannot report the
+ * offered rate as its throughput.
+ */
+final class Report {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99_9"};
+    private static final String ROW = "%-22s %9s %9s %8s %9s %9s %9s %9s%n";
+
+    private Report() {
+    }
+
+    static ObjectNode build(ObjectMapper mapper, Options options, Instant startedAt,
+                            Map<Operation, OperationStats> stats, long elapsedNanos, long maxLagNanos,
+                            boolean drained) {
+        double seconds = elapsedNanos / 1e9;
+        ObjectNode report = mapper.createObjectNode();
+        if (options.label != null) {
+            report.put("label", options.label);
+        }
+        report.put("started_at", startedAt.toString());
+        report.put("base_url", options.baseUrl);
+
+        ObjectNode config = report.putObject("config");
+        config.put("rate", options.rate);
+        config.put("duration_s", options.duration.toNanos() / 1e9);
+        config.put("warmup_s", options.warmup.toNanos() / 1e9);
+        config.put("timeout_ms", options.timeout.toMillis());
+        config.put("max_in_flight", options.maxInFlight);
+        ObjectNode mix = config.putObject("mix");
+        options.mix.forEach((operation, weight) -> mix.put(operation.key(), weight));
+
+        Histogram latency = new Histogram(3);
+        Histogram serviceTime = new Histogram(3);
+        latency.setAutoResize(true);
+        serviceTime.setAutoResize(true);
+        Map<String, Long> errors = new TreeMap<>();
+        long succeeded = 0;
+        long failed = 0;
+        long skipped = 0;
+        ObjectNode operations = mapper.createObjectNode();
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            latency.add(s.latency());
+            serviceTime.add(s.serviceTime());
+            s.errors().forEach((code, count) -> errors.merge(code, count, Long::sum));
+            succeeded += s.succeeded();
+            failed += s.failed();
+            skipped += s.skipped();
+
+            ObjectNode operation = section(operations.putObject(entry.getKey().key()), seconds,
+                    s.succeeded(), s.failed(), s.skipped(), s.latency(), s.serviceTime(), s.errors());
+            ObjectNode statuses = operation.putObject("status");
+            s.statuses().forEach(statuses::put);
+        }
+
+        section(report.putObject("summary"), seconds, succeeded, failed, skipped, latency, serviceTime, errors);
+        report.set("operations", operations);
+
+        ObjectNode client = report.putObject("client");
+        client.put("elapsed_s", round(seconds));
+        client.put("max_send_lag_ms", millis(maxLagNanos));
+        client.put("drained", drained);
+        return report;
+    }
+
+    private static ObjectNode section(ObjectNode node, double seconds, long succeeded, long failed, long skipped,
+                                      Histogram latency, Histogram serviceTime, Map<String, Long> errors) {
+        long requests = succeeded + failed;
+        node.put("requests", requests);
+        node.put("succeeded", succeeded);
+        node.put("failed", failed);
+        node.put("skipped", skipped);
+        node.put("throughput", round(requests / seconds));
+        node.put("goodput", round(succeeded / seconds));
+        node.put("error_rate", requests == 0 ? 0 : round((double) failed / requests));
+        latency(node.putObject("latency_ms"), latency);
+        latency(node.putObject("service_time_ms"), serviceTime);
+        ObjectNode errorNode = node.putObject("errors");
+        errors.forEach(errorNode::put);
+        return node;
+    }
+
+    private static void latency(ObjectNode node, Histogram histogram) {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            node.put(PERCENTILE_NAMES[i], millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+        }
+        node.put("max", millis(histogram.getMaxValue()));
+        node.put("mean", millis(histogram.getMean()));
+    }
+
+    /* ================= CONSOLE ================= */
+
+    static void print(JsonNode report, PrintStream out) {
+        out.printf(ROW, "operation", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Iterator<Map.Entry<String, JsonNode>> operations = report.path("operations").fields();
+        while (operations.hasNext()) {
+            Map.Entry<String, JsonNode> operation = operations.next();
+            printRow(operation.getKey(), operation.getValue(), out);
+        }
+        printRow("total", report.path("summary"), out);
+
+        JsonNode errors = report.path("summary").path("errors");
+        if (!errors.isEmpty()) {
+            out.println();
+            out.println("errors:");
+            errors.fields().forEachRemaining(e -> out.printf("  %-32s %d%n", e.getKey(), e.getValue().asLong()));
+        }
+        out.printf("%nmax send lag %.1f ms%s%n", report.path("client").path("max_send_lag_ms").asDouble(),
+                report.path("client").path("drained").asBoolean() ? "" : ", some responses never arrived");
+    }
+
+    private static void printRow(String name, JsonNode node, PrintStream out) {
+        JsonNode latency = node.path("latency_ms");
+        out.printf(ROW, name,
+                node.path("requests").asLong(),
+                format(node.path("throughput").asDouble()),
+                percent(node.path("error_rate")),
+                format(latency.path("p50").asDouble()),
+                format(latency.path("p99").asDouble()),
+                format(latency.path("p99_9").asDouble()),
+                format(latency.path("max").asDouble()));
+    }
+
+    /**
+     * Baseline against current, one line per operation present in both:
+     * throughput, tail latency and error rate with the relative change.
+     */
+    static void compare(JsonNode baseline, JsonNode current, PrintStream out) {
+        out.printf("%-22s %-24s %-24s %-24s %-24s%n", "operation", "req/s", "p99 ms", "p99.9 ms", "error rate");
+        compareRow("total", baseline.path("summary"), current.path("summary"), out);
+        Iterator<Map.Entry<String, JsonNode>> operations = current.path("operations").fields();
+        while (operations.hasNext()) {
+            Map.Entry<String, JsonNode> operation = operations.next();
+            JsonNode before = baseline.path("operations").path(operation.getKey());
+            if (!before.isMissingNode()) {
+                compareRow(operation.getKey(), before, operation.getValue(), out);
+            }
+        }
+    }
+
+    private static void compareRow(String name, JsonNode before, JsonNode after, PrintStream out) {
+        out.printf("%-22s %-24s %-24s %-24s %-24s%n", name,
+                delta(before.path("throughput"), after.path("throughput")),
+                delta(before.path("latency_ms").path("p99"), after.path("latency_ms").path("p99")),
+                delta(before.path("latency_ms").path("p99_9"), after.path("latency_ms").path("p99_9")),
+                percent(before.path("error_rate")) + " -> " + percent(after.path("error_rate")));
+    }
+
+    private static String percent(JsonNode rate) {
+        return String.format("%.2f%%", rate.asDouble() * 100);
+    }
+
+    private static String delta(JsonNode before, JsonNode after) {
+        double a = before.asDouble();
+        double b = after.asDouble();
+        String change = a == 0 ? (b == 0 ? "=" : "new") : String.format("%+.1f%%", (b - a) / a * 100);
+        return format(a) + " -> " + format(b) + " (" + change + ")";
+    }
+
+    static String describe(Duration duration) {
+        return duration.toMillis() % 1000 == 0 ? duration.toSeconds() + "s" : duration.toMillis() + "ms";
+    }
+
+    private static String format(double value) {
+        return value >= 100 ? String.format("%.0f", value) : String.format("%.2f", value);
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1e4) / 1e4;
+    }
+}
@@ -0,0 +1,100 @@
+package com.gateway.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.Year;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds API requests for the merchant under test and keeps the ids the
+ * run has created.
+ */
+final class Requests {
+
+    private static final int POOL_SIZE = 10_000;
+    private static final String CARD_NUMBER = "4111111111111111";
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final String apiSecret;
+    private final Duration timeout;
+    private final String runId;
+    private final int expiryYear = Year.now().getValue() + 3;
+    private final AtomicLong receipts = new AtomicLong();
+    private final IdPool orders = new IdPool(POOL_SIZE);
+    private final IdPool payments = new IdPool(POOL_SIZE);
+    // An order takes one successful payment, so each is paid at most once.
+    private final BlockingQueue<String> unpaidOrders = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    Requests(Options options) {
+        this.baseUrl = options.baseUrl;
+        this.apiKey = options.apiKey;
+        this.apiSecret = options.apiSecret;
+        this.timeout = options.timeout;
+        this.runId = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    IdPool orders() {
+        return orders;
+    }
+
+    IdPool payments() {
+        return payments;
+    }
+
+    void orderCreated(String orderId) {
+        orders.add(orderId);
+        unpaidOrders.offer(orderId);
+    }
+
+    /** An order no payment was sent for yet, or null if there is none. */
+    String unpaidOrder() {
+        return unpaidOrders.poll();
+    }
+
+    HttpRequest createOrder() {
+        int amount = 100 + ThreadLocalRandom.current().nextInt(100_000);
+        String body = "{\"amount\":" + amount + ",\"currency\":\"INR\",\"receipt\":\"lt_" + runId + "_"
+                + receipts.incrementAndGet() + "\",\"notes\":{\"source\":\"loadtest\"}}";
+        return post("/api/v1/orders", body);
+    }
+
+    HttpRequest createUpiPayment(String orderId) {
+        return post("/api/v1/payments",
+                "{\"order_id\":\"" + orderId + "\",\"method\":\"upi\",\"vpa\":\"loadtest@okaxis\"}");
+    }
+
+    HttpRequest createCardPayment(String orderId) {
+        return post("/api/v1/payments",
+                "{\"order_id\":\"" + orderId + "\",\"method\":\"card\",\"card\":{\"number\":\"" + CARD_NUMBER
+                        + "\",\"expiry_month\":12,\"expiry_year\":" + expiryYear
+                        + ",\"cvv\":\"123\",\"holder_name\":\"Load Test\"}}");
+    }
+
+    HttpRequest get(String path, boolean authenticated) {
+        HttpRequest.Builder builder = builder(path).GET();
+        if (authenticated) {
+            authenticate(builder);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return authenticate(builder(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+    }
+
+    private HttpRequest.Builder authenticate(HttpRequest.Builder builder) {
+        return builder.header("X-Api-Key", apiKey).header("X-Api-Secret", apiSecret);
+    }
+}
@@ -169,6 +169,41 @@ else
 fi
 echo ""
 
+# Test 7: Burst from one merchant
+# One merchant's backend sends every payment, so a burst from it must not trip the risk checks.
+echo "Test 7: Burst of 40 payments from one merchant"
+orders_body=$(printf '{"amount": 1000},%.0s' $(seq 1 40))
+batch_response=$(curl -s -X POST "$API_URL/api/v1/orders/batch" \
+  -H "X-Api-Key: $API_KEY" \
+  -H "X-Api-Secret: $API_SECRET" \
+  -H "Content-Type: application/json" \
+  -d "{\"orders\": [${orders_body%,}]}")
+
+declined=0
+created=0
+i=0
+for burst_order_id in $(echo "$batch_response" | grep -o '"id":"order_[^"]*"' | cut -d'"' -f4); do
+    i=$((i + 1))
+    burst_response=$(curl -s -X POST "$API_URL/api/v1/payments" \
+      -H "X-Api-Key: $API_KEY" \
+      -H "X-Api-Secret: $API_SECRET" \
+      -H "Content-Type: application/json" \
+      -d "{\"order_id\": \"$burst_order_id\", \"method\": \"upi\", \"vpa\": \"burst$i@okaxis\"}")
+    if echo "$burst_response" | grep -q "pay_"; then
+        created=$((created + 1))
+    fi
+    if echo "$burst_response" | grep -q "RISK_VELOCITY"; then
+        declined=$((declined + 1))
+    fi
+done
+
+if [ "$created" -eq 40 ] && [ "$declined" -eq 0 ]; then
+    echo -e "${GREEN}✓ All 40 payments accepted, none declined by risk checks${NC}"
+else
+    echo -e "${RED}✗ $created of 40 payments created, $declined declined by risk checks${NC}"
+fi
+echo ""
+
 echo "================================"
 echo "Testing Complete!"
 echo ""